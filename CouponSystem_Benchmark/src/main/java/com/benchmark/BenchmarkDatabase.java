@@ -0,0 +1,81 @@
+package com.benchmark;
+
+import java.util.Date;
+
+import com.beans.Company;
+import com.beans.Coupon;
+import com.beans.CouponType;
+import com.beans.Customer;
+import com.exceptions.CouponSystemException;
+import com.facade.AdminFacade;
+import com.facade.CompanyFacade;
+import com.main.ClientType;
+import com.main.CouponSystem;
+import com.testsupport.EmbeddedDatabase;
+
+/**
+ * Creates and seeds the in-memory embedded Derby database the benchmarks run
+ * against. The database is created once per benchmark JVM (JMH forks a new JVM
+ * for each benchmark), before the connection pool is created.
+ *
+ * @author SegevSinay
+ */
+public class BenchmarkDatabase {
+
+	public static final String DB_NAME = "coupon_bench_db";
+
+	public static final int COMPANIES = 10;
+	public static final int COUPONS_PER_COMPANY = 100;
+	public static final int CUSTOMERS = 64;
+	public static final int COUPON_AMOUNT = 1000000;
+	public static final String PASSWORD = "Pass1234";
+
+	private static boolean initialized;
+
+	/**
+	 * Creates the database tables and seeds the companies, coupons and customers
+	 * using the given connection pool engine ("concurrent" or "legacy").
+	 */
+	public static synchronized void init(String poolEngine) throws CouponSystemException, InterruptedException {
+		if (initialized) {
+			return;
+		}
+		System.setProperty("coupon.pool.engine", poolEngine);
+		EmbeddedDatabase.start(DB_NAME);
+
+		CouponSystem cs = CouponSystem.getInstance();
+		AdminFacade admin = (AdminFacade) cs.login("admin", "1234", ClientType.ADMIN);
+		Date start = new Date();
+		Date end = new Date(System.currentTimeMillis() + 365L * 24 * 60 * 60 * 1000);
+		CouponType[] types = CouponType.values();
+		for (int c = 0; c < COMPANIES; c++) {
+			admin.createCompany(new Company(companyName(c), PASSWORD, companyName(c) + "@bench.com"));
+			CompanyFacade company = (CompanyFacade) cs.login(companyName(c), PASSWORD, ClientType.COMPANY);
+			for (int i = 0; i < COUPONS_PER_COMPANY; i++) {
+				int n = c * COUPONS_PER_COMPANY + i;
+				company.createCoupon(new Coupon(couponTitle(n), start, end, COUPON_AMOUNT, types[n % types.length],
+						"benchmark coupon", n % 100, "image"));
+			}
+		}
+		for (int i = 0; i < CUSTOMERS; i++) {
+			admin.createCustomer(new Customer(customerName(i), PASSWORD));
+		}
+		initialized = true;
+	}
+
+	public static String companyName(int n) {
+		return "COMP" + n;
+	}
+
+	public static String couponTitle(int n) {
+		return "coupon" + n;
+	}
+
+	public static String customerName(int n) {
+		return "cust" + n;
+	}
+
+	public static int totalCoupons() {
+		return COMPANIES * COUPONS_PER_COMPANY;
+	}
+}
@@ -0,0 +1,34 @@
+package com.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmark suite at 1, 8 and 64 threads. any JMH command line option
+ * can be passed (e.g a benchmark name regex, -f, -wi, -i), passing -t runs only
+ * the given thread count.
+ *
+ * usage: java -jar target/benchmarks.jar [JMH options]
+ *
+ * @author SegevSinay
+ */
+public class BenchmarkRunner {
+
+	private static final int[] THREADS = { 1, 8, 64 };
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if (cmd.getThreads().hasValue()) {
+			new Runner(cmd).run();
+			return;
+		}
+		for (int threads : THREADS) {
+			Options opts = new OptionsBuilder().parent(cmd).threads(threads).build();
+			new Runner(opts).run();
+		}
+	}
+}
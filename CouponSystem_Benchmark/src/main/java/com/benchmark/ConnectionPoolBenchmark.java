@@ -0,0 +1,46 @@
+package com.benchmark;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.connectionpool.ConnectionPool;
+import com.exceptions.CouponSystemException;
+
+/**
+ * Measures the ConnectionPool getConnection/returnConnection round trip under
+ * contention, for both pool engines.
+ *
+ * @author SegevSinay
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConnectionPoolBenchmark {
+
+	@Param({ "concurrent", "legacy" })
+	public String engine;
+
+	private ConnectionPool pool;
+
+	@Setup
+	public void setup() throws CouponSystemException, InterruptedException {
+		BenchmarkDatabase.init(engine);
+		pool = ConnectionPool.getInstance();
+	}
+
+	@Benchmark
+	public Connection getAndReturnConnection() throws CouponSystemException {
+		Connection conn = pool.getConnection();
+		pool.returnConnection(conn);
+		return conn;
+	}
+}
@@ -0,0 +1,43 @@
+package com.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.beans.Coupon;
+import com.dao.CouponDAO;
+import com.dbdao.CouponDBDAO;
+import com.exceptions.CouponSystemException;
+
+/**
+ * Measures CouponDBDAO.getCouponByTitle, the lookup used by nearly every facade
+ * operation.
+ *
+ * @author SegevSinay
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CouponDAOBenchmark {
+
+	private CouponDAO coupDao;
+
+	@Setup
+	public void setup() throws CouponSystemException, InterruptedException {
+		BenchmarkDatabase.init("concurrent");
+		coupDao = new CouponDBDAO();
+	}
+
+	@Benchmark
+	public Coupon getCouponByTitle() throws CouponSystemException {
+		int n = ThreadLocalRandom.current().nextInt(BenchmarkDatabase.totalCoupons());
+		return coupDao.getCouponByTitle(BenchmarkDatabase.couponTitle(n));
+	}
+}
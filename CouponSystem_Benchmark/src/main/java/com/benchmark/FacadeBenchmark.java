@@ -0,0 +1,94 @@
+package com.benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.beans.Coupon;
+import com.beans.CouponType;
+import com.beans.PurchaseResult;
+import com.connectionpool.ConnectionPool;
+import com.exceptions.CouponSystemException;
+import com.facade.CompanyFacade;
+import com.facade.CustomerFacade;
+import com.main.ClientType;
+import com.main.CouponSystem;
+
+/**
+ * Measures the facade hot paths: CustomerFacade.purchaseCoupon and
+ * CompanyFacade.getAllCouponsByType. each benchmark thread logs in as its own
+ * customer / company.
+ *
+ * @author SegevSinay
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FacadeBenchmark {
+
+	private static final AtomicInteger threadCounter = new AtomicInteger();
+
+	@State(Scope.Thread)
+	public static class ClientState {
+
+		CustomerFacade customer;
+		CompanyFacade company;
+		int nextCoupon;
+
+		@Setup
+		public void setup() throws CouponSystemException, InterruptedException {
+			BenchmarkDatabase.init("concurrent");
+			int n = threadCounter.getAndIncrement();
+			CouponSystem cs = CouponSystem.getInstance();
+			customer = (CustomerFacade) cs.login(BenchmarkDatabase.customerName(n % BenchmarkDatabase.CUSTOMERS),
+					BenchmarkDatabase.PASSWORD, ClientType.CUSTOMER);
+			company = (CompanyFacade) cs.login(BenchmarkDatabase.companyName(n % BenchmarkDatabase.COMPANIES),
+					BenchmarkDatabase.PASSWORD, ClientType.COMPANY);
+			nextCoupon = ThreadLocalRandom.current().nextInt(BenchmarkDatabase.totalCoupons());
+		}
+	}
+
+	/**
+	 * removes all purchases before each iteration, so the purchases are not
+	 * rejected as already purchased (until a thread wraps around all coupons).
+	 */
+	@State(Scope.Benchmark)
+	public static class PurchaseReset {
+
+		@Setup(Level.Iteration)
+		public void reset() throws CouponSystemException, SQLException, InterruptedException {
+			BenchmarkDatabase.init("concurrent");
+			ConnectionPool pool = ConnectionPool.getInstance();
+			Connection conn = pool.getConnection();
+			try (Statement stmt = conn.createStatement();) {
+				stmt.executeUpdate("DELETE FROM customer_coupon");
+			} finally {
+				pool.returnConnection(conn);
+			}
+		}
+	}
+
+	@Benchmark
+	public PurchaseResult purchaseCoupon(ClientState state, PurchaseReset reset) throws CouponSystemException {
+		int n = state.nextCoupon++ % BenchmarkDatabase.totalCoupons();
+		return state.customer.tryPurchaseCoupon(new Coupon(BenchmarkDatabase.couponTitle(n)));
+	}
+
+	@Benchmark
+	public Collection<Coupon> getAllCouponsByType(ClientState state) throws CouponSystemException {
+		CouponType[] types = CouponType.values();
+		return state.company.getAllCouponsByType(types[ThreadLocalRandom.current().nextInt(types.length)]);
+	}
+}
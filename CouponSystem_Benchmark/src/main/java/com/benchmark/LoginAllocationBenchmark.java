@@ -0,0 +1,69 @@
+package com.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.beans.Company;
+import com.beans.Customer;
+import com.dbdao.CompanyDBDAO;
+import com.dbdao.CouponDBDAO;
+import com.dbdao.CustomerDBDAO;
+import com.exceptions.CouponSystemException;
+import com.facade.CompanyFacade;
+import com.facade.CustomerFacade;
+
+/**
+ * Measures the facade construction done by each login: with new DBDAO's per
+ * facade (how the facades were constructed before the DAORegistry) against
+ * the shared DBDAO's of the DAORegistry. the credentials check itself is
+ * measured by LoginBenchmark.
+ *
+ * Run with the GC profiler to compare the allocation per login
+ * (gc.alloc.rate.norm):
+ *
+ * java -jar target/benchmarks.jar LoginAllocationBenchmark -prof gc -t 1
+ *
+ * @author SegevSinay
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoginAllocationBenchmark {
+
+	private Company company;
+	private Customer customer;
+
+	@Setup
+	public void setup() throws CouponSystemException, InterruptedException {
+		BenchmarkDatabase.init("concurrent");
+		company = new Company(1, BenchmarkDatabase.companyName(0), BenchmarkDatabase.PASSWORD, null);
+		customer = new Customer(1, BenchmarkDatabase.customerName(0), BenchmarkDatabase.PASSWORD);
+	}
+
+	@Benchmark
+	public CompanyFacade companyFacadeNewDaos() throws CouponSystemException {
+		return new CompanyFacade(company, new CompanyDBDAO(), new CouponDBDAO());
+	}
+
+	@Benchmark
+	public CompanyFacade companyFacadeSharedDaos() throws CouponSystemException {
+		return new CompanyFacade(company);
+	}
+
+	@Benchmark
+	public CustomerFacade customerFacadeNewDaos() throws CouponSystemException {
+		return new CustomerFacade(customer, new CustomerDBDAO(), new CouponDBDAO());
+	}
+
+	@Benchmark
+	public CustomerFacade customerFacadeSharedDaos() throws CouponSystemException {
+		return new CustomerFacade(customer);
+	}
+}
@@ -0,0 +1,48 @@
+package com.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.exceptions.CouponSystemException;
+import com.facade.CouponClientFacade;
+import com.main.ClientType;
+import com.main.CouponSystem;
+
+/**
+ * Measures CouponSystem.login for company and customer clients.
+ *
+ * @author SegevSinay
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoginBenchmark {
+
+	private CouponSystem cs;
+
+	@Setup
+	public void setup() throws CouponSystemException, InterruptedException {
+		BenchmarkDatabase.init("concurrent");
+		cs = CouponSystem.getInstance();
+	}
+
+	@Benchmark
+	public CouponClientFacade companyLogin() throws CouponSystemException {
+		int n = ThreadLocalRandom.current().nextInt(BenchmarkDatabase.COMPANIES);
+		return cs.login(BenchmarkDatabase.companyName(n), BenchmarkDatabase.PASSWORD, ClientType.COMPANY);
+	}
+
+	@Benchmark
+	public CouponClientFacade customerLogin() throws CouponSystemException {
+		int n = ThreadLocalRandom.current().nextInt(BenchmarkDatabase.CUSTOMERS);
+		return cs.login(BenchmarkDatabase.customerName(n), BenchmarkDatabase.PASSWORD, ClientType.CUSTOMER);
+	}
+}
@@ -0,0 +1,107 @@
+package com.beans;
+
+/**
+ * Sets the "Blueprint" for a CompanyRemovalReport type objects. a company
+ * removal report holds the number of records removed from each table when a
+ * company is removed together with its coupons.
+ *
+ * @author SegevSinay
+ */
+public class CompanyRemovalReport {
+
+	private int removedCompanies;
+	private int removedCoupons;
+	private int removedCustomerCoupons;
+	private int removedCompanyCoupons;
+	private long elapsedMillis;
+
+	/**
+	 * Default constructor.
+	 */
+	public CompanyRemovalReport() {
+	}
+
+	/**
+	 * allows to get the number of records removed from companies table (1 if the
+	 * company was removed).
+	 */
+	public int getRemovedCompanies() {
+		return removedCompanies;
+	}
+
+	/**
+	 * allows to set the number of records removed from companies table.
+	 */
+	public void setRemovedCompanies(int removedCompanies) {
+		this.removedCompanies = removedCompanies;
+	}
+
+	/**
+	 * allows to get the number of the company's coupons removed from coupons
+	 * table.
+	 */
+	public int getRemovedCoupons() {
+		return removedCoupons;
+	}
+
+	/**
+	 * allows to set the number of the company's coupons removed from coupons
+	 * table.
+	 */
+	public void setRemovedCoupons(int removedCoupons) {
+		this.removedCoupons = removedCoupons;
+	}
+
+	/**
+	 * allows to get the number of records removed from customer_coupon table.
+	 */
+	public int getRemovedCustomerCoupons() {
+		return removedCustomerCoupons;
+	}
+
+	/**
+	 * allows to set the number of records removed from customer_coupon table.
+	 */
+	public void setRemovedCustomerCoupons(int removedCustomerCoupons) {
+		this.removedCustomerCoupons = removedCustomerCoupons;
+	}
+
+	/**
+	 * allows to get the number of records removed from company_coupon table.
+	 */
+	public int getRemovedCompanyCoupons() {
+		return removedCompanyCoupons;
+	}
+
+	/**
+	 * allows to set the number of records removed from company_coupon table.
+	 */
+	public void setRemovedCompanyCoupons(int removedCompanyCoupons) {
+		this.removedCompanyCoupons = removedCompanyCoupons;
+	}
+
+	/**
+	 * allows to get the removal run time in milliseconds.
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * allows to set the removal run time in milliseconds.
+	 */
+	public void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * Returns a custom textual representation of the object. in this case it will
+	 * display the removal counts and run time.
+	 */
+	@Override
+	public String toString() {
+		return "CompanyRemovalReport [removedCompanies=" + removedCompanies + ", removedCoupons=" + removedCoupons
+				+ ", removedCustomerCoupons=" + removedCustomerCoupons + ", removedCompanyCoupons="
+				+ removedCompanyCoupons + ", elapsedMillis=" + elapsedMillis + "]";
+	}
+}
@@ -0,0 +1,104 @@
+package com.beans;
+
+import java.util.Date;
+
+/**
+ * Sets the "Blueprint" for a CouponFilter type objects. a coupon filter holds
+ * the restrictions a coupons query is filtered by within the database: coupon
+ * type, maximum price and maximum end date. a restriction which is not set
+ * (null) is not applied, the restrictions that are set are combined.
+ *
+ * @author SegevSinay
+ */
+public class CouponFilter {
+
+	private CouponType type;
+	private Double maxPrice;
+	private Date maxEndDate;
+
+	/**
+	 * Default constructor. no restriction is applied.
+	 */
+	public CouponFilter() {
+	}
+
+	/**
+	 * Full constructor.
+	 */
+	public CouponFilter(CouponType type, Double maxPrice, Date maxEndDate) {
+		this.type = type;
+		this.maxPrice = maxPrice;
+		this.maxEndDate = maxEndDate;
+	}
+
+	/**
+	 * returns a filter by coupon type.
+	 */
+	public static CouponFilter byType(CouponType type) {
+		return new CouponFilter(type, null, null);
+	}
+
+	/**
+	 * returns a filter by maximum price (0 to max price).
+	 */
+	public static CouponFilter byMaxPrice(double maxPrice) {
+		return new CouponFilter(null, maxPrice, null);
+	}
+
+	/**
+	 * returns a filter by maximum end date.
+	 */
+	public static CouponFilter byMaxEndDate(Date maxEndDate) {
+		return new CouponFilter(null, null, maxEndDate);
+	}
+
+	/**
+	 * allows to get the coupon type restriction.
+	 */
+	public CouponType getType() {
+		return type;
+	}
+
+	/**
+	 * allows to set the coupon type restriction.
+	 */
+	public void setType(CouponType type) {
+		this.type = type;
+	}
+
+	/**
+	 * allows to get the maximum price restriction.
+	 */
+	public Double getMaxPrice() {
+		return maxPrice;
+	}
+
+	/**
+	 * allows to set the maximum price restriction.
+	 */
+	public void setMaxPrice(Double maxPrice) {
+		this.maxPrice = maxPrice;
+	}
+
+	/**
+	 * allows to get the maximum end date restriction.
+	 */
+	public Date getMaxEndDate() {
+		return maxEndDate;
+	}
+
+	/**
+	 * allows to set the maximum end date restriction.
+	 */
+	public void setMaxEndDate(Date maxEndDate) {
+		this.maxEndDate = maxEndDate;
+	}
+
+	/**
+	 * Returns a custom textual representation of the filter.
+	 */
+	@Override
+	public String toString() {
+		return "CouponFilter [type=" + type + ", maxPrice=" + maxPrice + ", maxEndDate=" + maxEndDate + "]";
+	}
+}
@@ -0,0 +1,70 @@
+package com.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sets the "Blueprint" for a CouponImportResult type objects. an import result
+ * holds the outcome of a bulk coupon import: the coupons which were created
+ * (with their generated IDs) and the reason each rejected coupon was not
+ * created, keyed by the coupon's position in the imported collection.
+ *
+ * @author SegevSinay
+ */
+public class CouponImportResult {
+
+	private List<Coupon> created = new ArrayList<>();
+	private Map<Integer, String> rejected = new TreeMap<>();
+
+	/**
+	 * Default constructor.
+	 */
+	public CouponImportResult() {
+	}
+
+	/**
+	 * allows to get the created coupons.
+	 */
+	public List<Coupon> getCreated() {
+		return created;
+	}
+
+	/**
+	 * allows to get the rejection reasons, keyed by the position (starting at 0)
+	 * of the rejected coupon within the imported collection.
+	 */
+	public Map<Integer, String> getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * adds a created coupon.
+	 */
+	public void addCreated(Coupon coupon) {
+		created.add(coupon);
+	}
+
+	/**
+	 * adds the rejection reason of the coupon at the given position.
+	 */
+	public void addRejected(int index, String reason) {
+		rejected.put(index, reason);
+	}
+
+	/**
+	 * returns true if all the imported coupons were created.
+	 */
+	public boolean isAllCreated() {
+		return rejected.isEmpty();
+	}
+
+	/**
+	 * Returns a custom textual representation of the import result.
+	 */
+	@Override
+	public String toString() {
+		return "CouponImportResult [created=" + created.size() + ", rejected=" + rejected + "]";
+	}
+}
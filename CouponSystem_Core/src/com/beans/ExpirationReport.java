@@ -0,0 +1,103 @@
+package com.beans;
+
+/**
+ * Sets the "Blueprint" for an ExpirationReport type objects. an expiration
+ * report holds the outcome of a single expired coupons removal run.
+ * 
+ * @author SegevSinay
+ */
+public class ExpirationReport {
+
+	private int removedCoupons;
+	private int removedCustomerCoupons;
+	private int removedCompanyCoupons;
+	private int chunks;
+	private long elapsedMillis;
+
+	/**
+	 * Default constructor.
+	 */
+	public ExpirationReport() {
+	}
+
+	/**
+	 * allows to get the number of expired coupons removed from coupons table.
+	 */
+	public int getRemovedCoupons() {
+		return removedCoupons;
+	}
+
+	/**
+	 * allows to set the number of expired coupons removed from coupons table.
+	 */
+	public void setRemovedCoupons(int removedCoupons) {
+		this.removedCoupons = removedCoupons;
+	}
+
+	/**
+	 * allows to get the number of records removed from customer_coupon table.
+	 */
+	public int getRemovedCustomerCoupons() {
+		return removedCustomerCoupons;
+	}
+
+	/**
+	 * allows to set the number of records removed from customer_coupon table.
+	 */
+	public void setRemovedCustomerCoupons(int removedCustomerCoupons) {
+		this.removedCustomerCoupons = removedCustomerCoupons;
+	}
+
+	/**
+	 * allows to get the number of records removed from company_coupon table.
+	 */
+	public int getRemovedCompanyCoupons() {
+		return removedCompanyCoupons;
+	}
+
+	/**
+	 * allows to set the number of records removed from company_coupon table.
+	 */
+	public void setRemovedCompanyCoupons(int removedCompanyCoupons) {
+		this.removedCompanyCoupons = removedCompanyCoupons;
+	}
+
+	/**
+	 * allows to get the number of transactions (chunks) the removal took.
+	 */
+	public int getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * allows to set the number of transactions (chunks) the removal took.
+	 */
+	public void setChunks(int chunks) {
+		this.chunks = chunks;
+	}
+
+	/**
+	 * allows to get the removal run time in milliseconds.
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * allows to set the removal run time in milliseconds.
+	 */
+	public void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * Returns a custom textual representation of the object. in this case it will
+	 * display the removal counts and run time.
+	 */
+	@Override
+	public String toString() {
+		return "ExpirationReport [removedCoupons=" + removedCoupons + ", removedCustomerCoupons="
+				+ removedCustomerCoupons + ", removedCompanyCoupons=" + removedCompanyCoupons + ", chunks=" + chunks
+				+ ", elapsedMillis=" + elapsedMillis + "]";
+	}
+}
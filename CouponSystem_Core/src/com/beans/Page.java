@@ -0,0 +1,72 @@
+package com.beans;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Sets the "Blueprint" for a Page type objects. a page holds up to "limit"
+ * records that follow a given ID (keyset pagination), together with the cursor
+ * of the next page: the ID of the last record in this page. the next page is
+ * requested by passing the cursor as the "afterId" of the next request, the
+ * first page is requested using afterId 0.
+ *
+ * @author SegevSinay
+ */
+public class Page<T> {
+
+	private List<T> items;
+	private long nextCursor;
+	private boolean hasNext;
+
+	/**
+	 * Full constructor.
+	 */
+	public Page(List<T> items, long nextCursor, boolean hasNext) {
+		this.items = items;
+		this.nextCursor = nextCursor;
+		this.hasNext = hasNext;
+	}
+
+	/**
+	 * creates a page from up to limit + 1 records read after the given ID, the
+	 * extra record (if read) only indicates that there is a next page and is
+	 * removed.
+	 */
+	public static <T> Page<T> of(List<T> records, int limit, long afterId, ToLongFunction<T> id) {
+		boolean hasNext = records.size() > limit;
+		if (hasNext) {
+			records.remove(limit);
+		}
+		long nextCursor = records.isEmpty() ? afterId : id.applyAsLong(records.get(records.size() - 1));
+		return new Page<>(records, nextCursor, hasNext);
+	}
+
+	/**
+	 * allows to get the records of this page.
+	 */
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * allows to get the "afterId" of the next page.
+	 */
+	public long getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * returns true if there are more records after this page.
+	 */
+	public boolean hasNext() {
+		return hasNext;
+	}
+
+	/**
+	 * Returns a custom textual representation of the page.
+	 */
+	@Override
+	public String toString() {
+		return "Page [items=" + items.size() + ", nextCursor=" + nextCursor + ", hasNext=" + hasNext + "]";
+	}
+}
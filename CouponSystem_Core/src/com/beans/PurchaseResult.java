@@ -0,0 +1,11 @@
+package com.beans;
+
+/**
+ * The following Enum sets a new type called "PurchaseResult" it contains the
+ * possible outcomes of a coupon purchase attempt.
+ * 
+ * @author SegevSinay
+ */
+public enum PurchaseResult {
+	PURCHASED, NOT_FOUND, ALREADY_PURCHASED, OUT_OF_STOCK, EXPIRED;
+}
@@ -0,0 +1,355 @@
+package com.connectionpool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.exceptions.ConnectionPoolException;
+
+/**
+ * The ConcurrentPoolEngine manages the connections without locking the pool
+ * monitor. A semaphore holds one permit per connection the pool is allowed to
+ * grant (maxSize), a thread acquires a permit first and only then takes an idle
+ * connection from a lock-free deque, or opens a new connection if there is no
+ * idle connection. this way the pool grows only under load and no connection is
+ * opened before the first request.
+ *
+ * Each thread remembers the last connection it has returned (its "affinity
+ * slot"), upon the next request it will try to get that same connection back
+ * before taking any other connection from the deque. Returned connections are
+ * pushed to the head of the deque so the most recently used connections are
+ * reused first and the connections at the tail are the ones that stay idle.
+ *
+ * A background task closes connections that have been idle longer than the
+ * idle timeout while keeping at least minIdle connections open.
+ *
+ * Dead connections (e.g after the database server has been restarted) are
+ * evicted and replaced without any intervention: (1) a connection that has been
+ * idle longer than the validation window is validated using isValid() before it
+ * is granted, (2) a connection that is returned closed is dropped, and (3) a
+ * background task validates the idle connections every validation interval.
+ * the evictions are counted (see getEvictedConnections()) and the background
+ * task prints one warning per run for the evictions since its previous run.
+ *
+ * @author SegevSinay
+ */
+class ConcurrentPoolEngine implements PoolEngine {
+
+	private final ConnectionFactory factory;
+	private final int maxSize;
+	private final int minIdle;
+	private final long idleTimeoutNanos;
+	private final long validationWindowNanos;
+	private final int validationTimeout;
+
+	// the available connections, most recently returned first
+	private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+
+	// one permit per connection the pool is allowed to grant
+	private final Semaphore permits;
+
+	// the number of open connections (idle and granted)
+	private final AtomicInteger total = new AtomicInteger();
+
+	// the last connection returned by the current thread
+	private final ThreadLocal<Connection> affinity = new ThreadLocal<>();
+
+	private final ScheduledExecutorService reaper;
+	private volatile boolean used;
+
+	// the number of dead connections that were evicted
+	private final AtomicInteger evicted = new AtomicInteger();
+	// the evictions already reported (used by the reaper thread only)
+	private int reportedEvictions;
+
+	/**
+	 * ConcurrentPoolEngine Constructor. no connection is opened until the first
+	 * request.
+	 */
+	ConcurrentPoolEngine(ConnectionFactory factory, PoolConfig config) {
+		this.factory = factory;
+		this.maxSize = config.getMaxSize();
+		this.minIdle = config.getMinIdle();
+		this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeout());
+		this.validationWindowNanos = TimeUnit.MILLISECONDS.toNanos(config.getValidationWindow());
+		this.validationTimeout = config.getValidationTimeout();
+		this.permits = new Semaphore(maxSize);
+		this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "connection-pool-reaper");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(config.getIdleTimeout() / 2, 1000);
+		reaper.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+		long interval = Math.max(config.getValidationInterval(), 1000);
+		reaper.scheduleWithFixedDelay(this::validateIdle, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Grants a connection if available and waits up to the given timeout for a
+	 * connection to be returned. throws ConnectionPoolException once the timeout
+	 * has elapsed.
+	 */
+	@Override
+	public Connection getConnection(long timeout, TimeUnit unit) throws ConnectionPoolException {
+		try {
+			if (!permits.tryAcquire(timeout, unit)) {
+				throw new ConnectionPoolException("Unable to get a connection within " + timeout + " "
+						+ unit.toString().toLowerCase() + "\ncause: connection pool is empty");
+			}
+		} catch (InterruptedException e) {
+			throw new ConnectionPoolException("wait has been interrupted! \ncause:", e);
+		}
+		used = true;
+		IdleConnection ic;
+		while ((ic = takeIdle()) != null) {
+			if (System.nanoTime() - ic.since < validationWindowNanos || isAlive(ic.conn)) {
+				return ic.conn;
+			}
+			evict(ic.conn); // dead connection, try the next idle connection or open a new one
+		}
+		try {
+			Connection conn = factory.create(); // no idle connection, the pool grows by one
+			total.incrementAndGet();
+			return conn;
+		} catch (SQLException e) {
+			permits.release();
+			throw new ConnectionPoolException("Unable to create a new connection!", e);
+		}
+	}
+
+	/**
+	 * returns the connection to the head of the deque and releases its permit.
+	 */
+	@Override
+	public void returnConnection(Connection conn) throws ConnectionPoolException {
+		if (conn == null) {
+			throw new ConnectionPoolException("Unable to return a null connection!");
+		}
+		if (isClosed(conn)) {
+			evict(conn); // the permit is released and the next request opens a new connection
+		} else {
+			affinity.set(conn);
+			idle.offerFirst(new IdleConnection(conn, System.nanoTime()));
+		}
+		permits.release();
+	}
+
+	/**
+	 * closeAllConnection() waits for all the ongoing connections to return and
+	 * then closes all connections. it is used during the system Shutdown
+	 */
+	@Override
+	public void closeAllConnection() throws ConnectionPoolException {
+		reaper.shutdownNow();
+		try {
+			permits.acquire(maxSize); // wait for the ongoing connections to return to connection pool
+		} catch (InterruptedException e) {
+			throw new ConnectionPoolException("wait has been interrupted!", e);
+		}
+		int closed = 0;
+		IdleConnection ic;
+		while ((ic = idle.pollFirst()) != null) {
+			try {
+				factory.destroy(ic.conn);
+				total.decrementAndGet();
+				closed++;
+			} catch (SQLException e) {
+				throw new ConnectionPoolException("Unable to close the current connection!", e);
+			}
+		}
+		System.out.println(closed + " connnections been closed");
+	}
+
+	/**
+	 * Returns the number of connections currently available.
+	 */
+	@Override
+	public int getAvailableConnections() {
+		return permits.availablePermits();
+	}
+
+	/**
+	 * Returns the number of open connections (idle and granted).
+	 */
+	@Override
+	public int getOpenConnections() {
+		return total.get();
+	}
+
+	/**
+	 * Returns the number of dead connections that were evicted.
+	 */
+	@Override
+	public int getEvictedConnections() {
+		return evicted.get();
+	}
+
+	/**
+	 * takes the current thread's last connection if it is idle, otherwise the most
+	 * recently returned idle connection. returns null if there is no idle
+	 * connection.
+	 */
+	private IdleConnection takeIdle() {
+		Connection last = affinity.get();
+		if (last != null) {
+			for (IdleConnection ic : idle) {
+				if (ic.conn == last && idle.removeFirstOccurrence(ic)) {
+					return ic;
+				}
+			}
+		}
+		return idle.pollFirst();
+	}
+
+	/**
+	 * closes connections that have been idle longer than the idle timeout (oldest
+	 * first) as long as more than minIdle connections are open, and opens
+	 * connections up to minIdle once the pool has been used. reports the dead
+	 * connections evicted since the last run.
+	 */
+	private void maintain() {
+		reportEvictions();
+		long now = System.nanoTime();
+		IdleConnection oldest;
+		while (total.get() > minIdle && (oldest = idle.peekLast()) != null
+				&& now - oldest.since > idleTimeoutNanos) {
+			if (idle.removeLastOccurrence(oldest)) {
+				total.decrementAndGet();
+				try {
+					factory.destroy(oldest.conn);
+				} catch (SQLException e) {
+					System.err.println("Unable to close idle connection: " + e.getMessage());
+				}
+			}
+		}
+		while (used && total.get() < minIdle && permits.tryAcquire()) {
+			try {
+				idle.offerLast(new IdleConnection(factory.create(), now));
+				total.incrementAndGet();
+			} catch (SQLException e) {
+				System.err.println("Unable to open idle connection: " + e.getMessage());
+				break;
+			} finally {
+				permits.release();
+			}
+		}
+	}
+
+	/**
+	 * prints a single warning for the dead connections evicted since the last
+	 * report, instead of a warning per eviction (e.g while the database restarts
+	 * every connection is evicted). the count is exposed by
+	 * getEvictedConnections().
+	 */
+	private void reportEvictions() {
+		int count = evicted.get();
+		if (count > reportedEvictions) {
+			System.err.println("WARNING: " + (count - reportedEvictions)
+					+ " dead connections have been evicted from the connection pool (" + count + " in total)");
+			reportedEvictions = count;
+		}
+	}
+
+	/**
+	 * validates every idle connection that has not been used within the validation
+	 * window. a valid connection is put back at the tail of the deque (keeping its
+	 * idle time), a dead connection is evicted and will be replaced on demand or
+	 * by the next maintenance run.
+	 *
+	 * a permit is held for each connection taken out of the deque for validation
+	 * (as if it was granted), so a borrower which finds the deque empty meanwhile
+	 * can't open a connection beyond maxSize. the validation stops once no permit
+	 * is available.
+	 */
+	private void validateIdle() {
+		Deque<IdleConnection> valid = new ArrayDeque<>();
+		boolean dead = false;
+		int held = 0;
+		try {
+			int count = idle.size();
+			for (int n = 0; n < count && permits.tryAcquire(); n++) {
+				held++;
+				IdleConnection ic = idle.pollLast(); // oldest first
+				if (ic == null) {
+					break;
+				}
+				if (System.nanoTime() - ic.since < validationWindowNanos) {
+					idle.offerLast(ic); // the remaining connections were used recently
+					break;
+				}
+				if (isAlive(ic.conn)) {
+					valid.offerFirst(ic);
+				} else {
+					evict(ic.conn);
+					dead = true;
+				}
+			}
+			IdleConnection ic;
+			while ((ic = valid.pollLast()) != null) {
+				idle.offerLast(ic);
+			}
+		} finally {
+			permits.release(held);
+		}
+		if (dead) {
+			maintain(); // replaces the evicted connections up to minIdle
+		}
+	}
+
+	/**
+	 * returns true if the connection responds within the validation timeout.
+	 */
+	private boolean isAlive(Connection conn) {
+		try {
+			return conn.isValid(validationTimeout);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * returns true if the connection has been closed (or can't tell).
+	 */
+	private boolean isClosed(Connection conn) {
+		try {
+			return conn.isClosed();
+		} catch (SQLException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * closes a dead connection quietly and removes it from the open connections
+	 * count.
+	 */
+	private void evict(Connection conn) {
+		total.decrementAndGet();
+		evicted.incrementAndGet();
+		try {
+			factory.destroy(conn);
+		} catch (SQLException e) {
+			// the connection is dead anyway
+		}
+	}
+
+	/**
+	 * an idle connection and the time it was returned to the pool.
+	 */
+	private static class IdleConnection {
+		final Connection conn;
+		final long since;
+
+		IdleConnection(Connection conn, long since) {
+			this.conn = conn;
+			this.since = since;
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.connectionpool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * ConnectionFactory opens and closes the physical database connections for the
+ * pool engines, which allows the engines to open connections only when needed
+ * and allows the pool to release the resources attached to a connection (e.g
+ * its statement cache) once it is closed.
+ *
+ * @author SegevSinay
+ */
+interface ConnectionFactory {
+
+	/**
+	 * Opens a new database connection.
+	 */
+	Connection create() throws SQLException;
+
+	/**
+	 * Closes a database connection that is removed from the pool.
+	 */
+	default void destroy(Connection conn) throws SQLException {
+		conn.close();
+	}
+}
@@ -2,36 +2,58 @@ package com.connectionpool;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import com.exceptions.ConnectionPoolException;
 
 /**
  * The ConnectionPool Class is a singleton class which manage the connections
- * allowed simultaneously. it has 2 synchronized methods: getConnection() and
- * returnConnection() that manages the connection requests from the threads
- * using wait() and notiftyAll() Object class methods. Once the connections have
- * reached the Max simultaneously connection allowed, any additional thread that
- * will request a connection via getConnection method will have to "wait()"
- * until the returnConnection() method will "notifyAll()" that there are
- * available connections in the ConnectionPool.
+ * allowed simultaneously. it delegates the connection requests to one of two
+ * pool engines:
+ * 
+ * (1) "concurrent" (default) - the ConcurrentPoolEngine which keeps the
+ * available connections in a lock-free deque guarded by a semaphore, threads
+ * never block on the pool monitor and each thread prefers the connection it has
+ * returned last. connections are opened only when needed (up to maxSize) and
+ * closed once they have been idle for too long (down to minIdle). dead
+ * connections are detected (on borrow and in the background) and replaced.
+ * 
+ * (2) "legacy" - the LegacyPoolEngine which eagerly opens maxSize connections
+ * and uses the original getConnection() and returnConnection() methods under a
+ * single pool lock.
+ * 
+ * The pool settings (and the engine) are loaded by PoolConfig from the
+ * "files/connectionPool.properties" file. Once the connections have reached the
+ * Max simultaneously connection allowed, any additional thread that will
+ * request a connection will wait until a connection is returned or until the
+ * requested timeout has elapsed.
+ * 
+ * Each pooled connection has its own StatementCache, the DBDAO classes prepare
+ * their statements using prepareStatement(conn, sql) so repeated queries reuse
+ * the already compiled statement of that connection.
+ * 
+ * While a UnitOfWork is active on a thread, the thread is granted the unit of
+ * work's connection and returning it is ignored until the unit of work is
+ * completed.
  */
 public class ConnectionPool {
 
-	// Maximum connections that can be active simultaneously.
-	private final static int MAX_CONN = 10;
-
 	// the ConnectionPool one instance
-	private static ConnectionPool instance;
+	private static volatile ConnectionPool instance;
 
-	// Set of connections, its size is limited by Maximum connections allowed
-	private Set<Connection> connections = new HashSet<>();
+	// the pool settings
+	private PoolConfig config;
+
+	// the engine that manages the connections
+	private PoolEngine engine;
+
+	// the statement cache of each open connection
+	private final ConcurrentHashMap<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+	private final StatementCacheStats statementCacheStats = new StatementCacheStats();
 
-	
 	/**
 	 * Private Constructor (SingelTone design pattern). only one Instance can be
 	 * created, and only within the ConnectionPool Class. other classes can interact
@@ -44,92 +66,156 @@ public class ConnectionPool {
 		} catch (SQLException e) {
 			throw new ConnectionPoolException("Unable to load Driver!", e);
 		}
-		for (int i = 1; i <= MAX_CONN; i++) {
-			try {
-				Connection conn = DriverManager.getConnection("jdbc:derby://localhost:1527/coupon_sys_db");
-				connections.add(conn);
-			} catch (SQLException e) {
-				throw new ConnectionPoolException("Unable to create connection pool!", e);
+		config = PoolConfig.load(); // validated, see PoolConfig.validate()
+		final String url = config.getUrl();
+		ConnectionFactory factory = new ConnectionFactory() {
+
+			@Override
+			public Connection create() throws SQLException {
+				return DriverManager.getConnection(url);
 			}
+
+			@Override
+			public void destroy(Connection conn) throws SQLException {
+				StatementCache cache = statementCaches.remove(conn);
+				if (cache != null) {
+					cache.close();
+				}
+				conn.close();
+			}
+		};
+		if ("legacy".equalsIgnoreCase(config.getEngine())) {
+			engine = new LegacyPoolEngine(factory, config);
+		} else {
+			engine = new ConcurrentPoolEngine(factory, config);
 		}
+		System.out.println("Connection pool has been created: " + config);
 	}
 
 	
 	/**
 	 * allows to get the single instance variable that was created in the singleton
-	 * class.
+	 * class. only the calls made before the instance is created synchronize, the
+	 * following calls read the volatile instance (no thread blocks on the class
+	 * monitor, e.g when UnitOfWork.begin() gets the pool).
+	 */
+	public static ConnectionPool getInstance() throws ConnectionPoolException {
+		ConnectionPool pool = instance;
+		if (pool == null) {
+			synchronized (ConnectionPool.class) {
+				pool = instance;
+				if (pool == null) {
+					pool = new ConnectionPool();
+					instance = pool;
+				}
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Grant a connection if available and forces threads to wait (up to the
+	 * configured acquire timeout) if the connections have reach the Maximum
+	 * connections allowed simultaneously.
+	 */
+	public Connection getConnection() throws ConnectionPoolException {
+		return getConnection(config.getAcquireTimeout(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Grant a connection if available and forces threads to wait up to the given
+	 * timeout if the connections have reach the Maximum connections allowed
+	 * simultaneously. throws ConnectionPoolException once the timeout has elapsed.
 	 */
-	public synchronized static ConnectionPool getInstance() throws ConnectionPoolException {
-		if (instance == null) {
-			instance = new ConnectionPool();
+	public Connection getConnection(long timeout, TimeUnit unit) throws ConnectionPoolException {
+		Connection bound = UnitOfWork.current(this);
+		if (bound != null) {
+			return bound;
 		}
-		return instance;
+		return engine.getConnection(timeout, unit);
 	}
 
-	private int i = MAX_CONN;
-	private int c = 1;
+	/**
+	 * returns the connection once it has been released so it will be available
+	 * for the next request.
+	 */
+	public void returnConnection(Connection conn) throws ConnectionPoolException {
+		if (conn == UnitOfWork.current(this)) {
+			return; // returned once the unit of work is completed
+		}
+		engine.returnConnection(conn);
+	}
 
 	/**
-	 * Grant a connection if available and forces threads to wait if the connections
-	 * have reach the Maximum connections allowed simultaneously.
+	 * Returns a prepared statement for the given SQL text from the statement cache
+	 * of the given (granted) connection. the statement must NOT be closed by the
+	 * caller, it stays open for the next request of the same SQL text.
 	 */
-	public synchronized Connection getConnection() throws ConnectionPoolException {
-		System.out.println("INFO: " + i + " avaliable connections");
-		while (connections.isEmpty()) {
-			try {
-				System.out.println("ALERT: connection pool is empty...");
-				wait(); // wait while there are no available connections...
-			} catch (InterruptedException e) {
-				throw new ConnectionPoolException("wait has been interrupted! \ncause:", e);
-			}
+	public PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+		return statementCache(conn).prepareStatement(sql);
+	}
+
+	/**
+	 * Returns a prepared statement for the given SQL text which returns the
+	 * generated keys (Statement.RETURN_GENERATED_KEYS) from the statement cache of
+	 * the given (granted) connection. the statement must NOT be closed by the
+	 * caller.
+	 */
+	public PreparedStatement prepareStatement(Connection conn, String sql, int autoGeneratedKeys)
+			throws SQLException {
+		return statementCache(conn).prepareStatement(sql, autoGeneratedKeys);
+	}
+
+	private StatementCache statementCache(Connection conn) {
+		conn = UnitOfWork.unwrap(conn);
+		StatementCache cache = statementCaches.get(conn);
+		if (cache == null) {
+			cache = new StatementCache(conn, config.getStatementCacheSize(), statementCacheStats);
+			statementCaches.put(conn, cache);
 		}
-		Iterator<Connection> it = connections.iterator();
-		Connection conn = it.next();// moves the iterator to the current position (since it starts at -1 position).
-		it.remove();// removes the connection that has been acquired by a thread.
-		i--;
-		System.out.println("INFO: " + c++ + " connection taken");
-		return conn;
+		return cache;
+	}
+
+	/**
+	 * allows to get the hit/miss statistics of the statement caches.
+	 */
+	public StatementCacheStats getStatementCacheStats() {
+		return statementCacheStats;
+	}
+
+	/**
+	 * Returns the number of connections currently available.
+	 */
+	public int getAvailableConnections() {
+		return engine.getAvailableConnections();
 	}
 
 	/**
-	 * returns the connection once it has been released and notifying all that there is an
-	 * available connection within the connection pool
+	 * Returns the number of open connections (idle and granted).
 	 */
-	public synchronized void returnConnection(Connection conn) throws ConnectionPoolException {
-		connections.add(conn);
-		System.out.println("INFO: 1 connection returned");
-		i++;
-		c--;
-		System.out.println("INFO: " + i + " avaliable connections");
-		notifyAll();
+	public int getOpenConnections() {
+		return engine.getOpenConnections();
+	}
+
+	/**
+	 * Returns the number of dead connections that were evicted and replaced.
+	 */
+	public int getEvictedConnections() {
+		return engine.getEvictedConnections();
+	}
+
+	/**
+	 * allows to get the pool settings.
+	 */
+	public PoolConfig getConfig() {
+		return config;
 	}
 
 	/**
 	 * closeAllConnection() closes all connections and is used during the system
 	 * Shutdown
 	 */
-	public synchronized void closeAllConnection() throws ConnectionPoolException {
-		int conn_counter = 0; // will increment each time a connection will be closed.
-		while (conn_counter < MAX_CONN) {// while we haven't closed all connections
-			while (connections.isEmpty()) {// while we have an ongoing connections
-				try {
-					wait(); // wait for the ongoing connections to return to connection pool
-				} catch (InterruptedException e) {
-					throw new ConnectionPoolException("wait has been interrupted!", e);
-				}
-			}
-			while (!connections.isEmpty()) {// while we have a connection within the connection set that we can
-											// close
-				try {
-					Iterator<Connection> it = connections.iterator();
-					it.next().close(); // close the open connection
-					it.remove();
-					System.out.println("1 connnection been closed");
-				} catch (SQLException e) {
-					throw new ConnectionPoolException("Unable to close the current connection!", e);
-				}
-				conn_counter++;// Increment the closed connection counter
-			}
-		}
+	public void closeAllConnection() throws ConnectionPoolException {
+		engine.closeAllConnection();
 	}
 }
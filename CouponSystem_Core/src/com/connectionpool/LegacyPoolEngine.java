@@ -0,0 +1,175 @@
+package com.connectionpool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.exceptions.ConnectionPoolException;
+
+/**
+ * The LegacyPoolEngine is the original ConnectionPool mechanism. its 2 methods:
+ * getConnection() and returnConnection() manage the connection requests from
+ * the threads under a single pool lock, a thread waits on the "available"
+ * condition while the pool is empty and is signaled once a connection is
+ * returned. it is kept in order to compare it with the ConcurrentPoolEngine.
+ *
+ * The pool lock is a ReentrantLock rather than the pool monitor
+ * (synchronized, wait() and notifyAll()), since a virtual thread which waits
+ * on a monitor pins its carrier (OS) thread.
+ *
+ * @author SegevSinay
+ */
+class LegacyPoolEngine implements PoolEngine {
+
+	private final ConnectionFactory factory;
+
+	// Maximum connections that can be active simultaneously.
+	private final int maxConn;
+
+	// Set of connections, its size is limited by Maximum connections allowed
+	private Set<Connection> connections = new HashSet<>();
+
+	private int i;
+	private int c = 1;
+
+	// guards the connections set, signaled whenever a connection is returned
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+
+	/**
+	 * LegacyPoolEngine Constructor. eagerly opens the maximum connections allowed.
+	 */
+	LegacyPoolEngine(ConnectionFactory factory, PoolConfig config) throws ConnectionPoolException {
+		this.factory = factory;
+		maxConn = config.getMaxSize();
+		for (int i = 1; i <= maxConn; i++) {
+			try {
+				connections.add(factory.create());
+			} catch (SQLException e) {
+				throw new ConnectionPoolException("Unable to create connection pool!", e);
+			}
+		}
+		i = maxConn;
+	}
+
+	/**
+	 * Grant a connection if available and forces threads to wait if the connections
+	 * have reach the Maximum connections allowed simultaneously.
+	 */
+	@Override
+	public Connection getConnection(long timeout, TimeUnit unit) throws ConnectionPoolException {
+		lock.lock();
+		try {
+			System.out.println("INFO: " + i + " avaliable connections");
+			long remaining = unit.toNanos(timeout);
+			while (connections.isEmpty()) {
+				if (remaining <= 0) {
+					throw new ConnectionPoolException("Unable to get a connection within " + timeout + " "
+							+ unit.toString().toLowerCase() + "\ncause: connection pool is empty");
+				}
+				try {
+					System.out.println("ALERT: connection pool is empty...");
+					remaining = available.awaitNanos(remaining); // wait while there are no available connections...
+				} catch (InterruptedException e) {
+					throw new ConnectionPoolException("wait has been interrupted! \ncause:", e);
+				}
+			}
+			Iterator<Connection> it = connections.iterator();
+			Connection conn = it.next();// moves the iterator to the current position (since it starts at -1 position).
+			it.remove();// removes the connection that has been acquired by a thread.
+			i--;
+			System.out.println("INFO: " + c++ + " connection taken");
+			return conn;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * returns the connection once it has been released and notifying all that there is an
+	 * available connection within the connection pool
+	 */
+	@Override
+	public void returnConnection(Connection conn) throws ConnectionPoolException {
+		lock.lock();
+		try {
+			connections.add(conn);
+			System.out.println("INFO: 1 connection returned");
+			i++;
+			c--;
+			System.out.println("INFO: " + i + " avaliable connections");
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * closeAllConnection() closes all connections and is used during the system
+	 * Shutdown
+	 */
+	@Override
+	public void closeAllConnection() throws ConnectionPoolException {
+		lock.lock();
+		try {
+			int conn_counter = 0; // will increment each time a connection will be closed.
+			while (conn_counter < maxConn) {// while we haven't closed all connections
+				while (connections.isEmpty()) {// while we have an ongoing connections
+					try {
+						available.await(); // wait for the ongoing connections to return to connection pool
+					} catch (InterruptedException e) {
+						throw new ConnectionPoolException("wait has been interrupted!", e);
+					}
+				}
+				while (!connections.isEmpty()) {// while we have a connection within the connection set that we can
+												// close
+					try {
+						Iterator<Connection> it = connections.iterator();
+						factory.destroy(it.next()); // close the open connection
+						it.remove();
+						System.out.println("1 connnection been closed");
+					} catch (SQLException e) {
+						throw new ConnectionPoolException("Unable to close the current connection!", e);
+					}
+					conn_counter++;// Increment the closed connection counter
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of connections currently available.
+	 */
+	@Override
+	public int getAvailableConnections() {
+		lock.lock();
+		try {
+			return connections.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of open connections (idle and granted).
+	 */
+	@Override
+	public int getOpenConnections() {
+		return maxConn;
+	}
+
+	/**
+	 * the legacy engine does not validate its connections.
+	 */
+	@Override
+	public int getEvictedConnections() {
+		return 0;
+	}
+}
@@ -0,0 +1,249 @@
+package com.connectionpool;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Properties;
+
+import com.exceptions.ConnectionPoolException;
+
+/**
+ * PoolConfig holds the ConnectionPool settings. the settings are loaded from
+ * the "files/connectionPool.properties" file, any setting which is missing from
+ * the file keeps its default value. a setting can also be overridden using a
+ * system property with the same key (e.g -Dcoupon.pool.maxSize=20).
+ *
+ * Available settings: (1) coupon.pool.url - the database url. (2)
+ * coupon.pool.minIdle - the number of connections the pool keeps open once it
+ * has been used. (3) coupon.pool.maxSize - maximum connections that can be
+ * active simultaneously. (4) coupon.pool.idleTimeout - milliseconds an idle
+ * connection (above minIdle) is kept open before it is closed. (5)
+ * coupon.pool.acquireTimeout - milliseconds getConnection() waits for an
+ * available connection. (6) coupon.pool.engine - "concurrent" or "legacy". (7)
+ * coupon.pool.validationInterval - milliseconds between background validations
+ * of the idle connections. (8) coupon.pool.validationWindow - a connection that
+ * was returned within this number of milliseconds is not validated upon
+ * getConnection(). (9) coupon.pool.validationTimeout - seconds to wait for a
+ * connection validation. (10) coupon.pool.statementCacheSize - maximum prepared
+ * statements cached per connection.
+ *
+ * The loaded settings are validated: a value which is not a number or is out
+ * of range (see validate()) fails the pool creation with a
+ * ConnectionPoolException naming the setting.
+ *
+ * @author SegevSinay
+ */
+public class PoolConfig {
+
+	public final static String URL = "coupon.pool.url";
+	public final static String MIN_IDLE = "coupon.pool.minIdle";
+	public final static String MAX_SIZE = "coupon.pool.maxSize";
+	public final static String IDLE_TIMEOUT = "coupon.pool.idleTimeout";
+	public final static String ACQUIRE_TIMEOUT = "coupon.pool.acquireTimeout";
+	public final static String ENGINE = "coupon.pool.engine";
+	public final static String VALIDATION_INTERVAL = "coupon.pool.validationInterval";
+	public final static String VALIDATION_WINDOW = "coupon.pool.validationWindow";
+	public final static String VALIDATION_TIMEOUT = "coupon.pool.validationTimeout";
+	public final static String STATEMENT_CACHE_SIZE = "coupon.pool.statementCacheSize";
+
+	private static File configFile = new File("files/connectionPool.properties");
+
+	private String url = "jdbc:derby://localhost:1527/coupon_sys_db";
+	private int minIdle = 2;
+	private int maxSize = 10;
+	private long idleTimeout = 60 * 1000;
+	private long acquireTimeout = 30 * 1000;
+	private String engine = "concurrent";
+	private long validationInterval = 30 * 1000;
+	private long validationWindow = 500;
+	private int validationTimeout = 2;
+	private int statementCacheSize = 32;
+
+	/**
+	 * Default constructor. sets all settings to their default values.
+	 */
+	public PoolConfig() {
+	}
+
+	/**
+	 * Loads the settings from the configuration file and the system properties,
+	 * and validates them.
+	 */
+	public static PoolConfig load() throws ConnectionPoolException {
+		Properties props = new Properties();
+		if (configFile.exists()) {
+			try (Reader reader = new FileReader(configFile);) {
+				props.load(reader);
+			} catch (IOException e) {
+				System.err.println("Unable to read " + configFile + ", using default pool settings. " + e.getMessage());
+			}
+		}
+		PoolConfig config = new PoolConfig();
+		config.setUrl(get(props, URL, config.getUrl()));
+		config.setMinIdle(getInt(props, MIN_IDLE, config.getMinIdle()));
+		config.setMaxSize(getInt(props, MAX_SIZE, config.getMaxSize()));
+		config.setIdleTimeout(getLong(props, IDLE_TIMEOUT, config.getIdleTimeout()));
+		config.setAcquireTimeout(getLong(props, ACQUIRE_TIMEOUT, config.getAcquireTimeout()));
+		config.setEngine(get(props, ENGINE, config.getEngine()));
+		config.setValidationInterval(getLong(props, VALIDATION_INTERVAL, config.getValidationInterval()));
+		config.setValidationWindow(getLong(props, VALIDATION_WINDOW, config.getValidationWindow()));
+		config.setValidationTimeout(getInt(props, VALIDATION_TIMEOUT, config.getValidationTimeout()));
+		config.setStatementCacheSize(getInt(props, STATEMENT_CACHE_SIZE, config.getStatementCacheSize()));
+		config.validate();
+		return config;
+	}
+
+	/**
+	 * checks that the settings are within range: 0 <= minIdle <= maxSize,
+	 * maxSize, the timeouts, the validation interval and the statement cache size
+	 * are positive, the validation window is not negative and the engine is
+	 * "concurrent" or "legacy". throws ConnectionPoolException naming the first
+	 * invalid setting.
+	 */
+	public void validate() throws ConnectionPoolException {
+		check(maxSize > 0, MAX_SIZE, maxSize, "must be positive");
+		check(minIdle >= 0 && minIdle <= maxSize, MIN_IDLE, minIdle, "must be between 0 and " + MAX_SIZE);
+		check(idleTimeout > 0, IDLE_TIMEOUT, idleTimeout, "must be positive");
+		check(acquireTimeout > 0, ACQUIRE_TIMEOUT, acquireTimeout, "must be positive");
+		check(validationInterval > 0, VALIDATION_INTERVAL, validationInterval, "must be positive");
+		check(validationWindow >= 0, VALIDATION_WINDOW, validationWindow, "must not be negative");
+		check(validationTimeout > 0, VALIDATION_TIMEOUT, validationTimeout, "must be positive");
+		check(statementCacheSize > 0, STATEMENT_CACHE_SIZE, statementCacheSize, "must be positive");
+		check("concurrent".equalsIgnoreCase(engine) || "legacy".equalsIgnoreCase(engine), ENGINE, engine,
+				"must be concurrent or legacy");
+	}
+
+	private static void check(boolean valid, String key, Object value, String rule) throws ConnectionPoolException {
+		if (!valid) {
+			throw new ConnectionPoolException("Invalid connection pool setting " + key + "=" + value + ", " + rule);
+		}
+	}
+
+	/**
+	 * returns the system property value if set, otherwise the configuration file
+	 * value if set, otherwise the default value.
+	 */
+	private static String get(Properties props, String key, String defaultValue) {
+		return System.getProperty(key, props.getProperty(key, defaultValue)).trim();
+	}
+
+	/**
+	 * returns the int value of the setting (see get()). throws
+	 * ConnectionPoolException if the value is not a number.
+	 */
+	private static int getInt(Properties props, String key, int defaultValue) throws ConnectionPoolException {
+		String value = get(props, key, String.valueOf(defaultValue));
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new ConnectionPoolException("Invalid connection pool setting " + key + "=" + value
+					+ ", expected a whole number", e);
+		}
+	}
+
+	/**
+	 * returns the long value of the setting (see get()). throws
+	 * ConnectionPoolException if the value is not a number.
+	 */
+	private static long getLong(Properties props, String key, long defaultValue) throws ConnectionPoolException {
+		String value = get(props, key, String.valueOf(defaultValue));
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new ConnectionPoolException("Invalid connection pool setting " + key + "=" + value
+					+ ", expected a whole number", e);
+		}
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public long getAcquireTimeout() {
+		return acquireTimeout;
+	}
+
+	public void setAcquireTimeout(long acquireTimeout) {
+		this.acquireTimeout = acquireTimeout;
+	}
+
+	public String getEngine() {
+		return engine;
+	}
+
+	public void setEngine(String engine) {
+		this.engine = engine;
+	}
+
+	public long getValidationInterval() {
+		return validationInterval;
+	}
+
+	public void setValidationInterval(long validationInterval) {
+		this.validationInterval = validationInterval;
+	}
+
+	public long getValidationWindow() {
+		return validationWindow;
+	}
+
+	public void setValidationWindow(long validationWindow) {
+		this.validationWindow = validationWindow;
+	}
+
+	public int getValidationTimeout() {
+		return validationTimeout;
+	}
+
+	public void setValidationTimeout(int validationTimeout) {
+		this.validationTimeout = validationTimeout;
+	}
+
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	public void setStatementCacheSize(int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	/**
+	 * Returns a custom textual representation of the pool settings.
+	 */
+	@Override
+	public String toString() {
+		return "PoolConfig [url=" + url + ", minIdle=" + minIdle + ", maxSize=" + maxSize + ", idleTimeout="
+				+ idleTimeout + ", acquireTimeout=" + acquireTimeout + ", engine=" + engine + ", validationInterval="
+				+ validationInterval + ", validationWindow=" + validationWindow + ", validationTimeout="
+				+ validationTimeout + ", statementCacheSize=" + statementCacheSize + "]";
+	}
+}
@@ -0,0 +1,49 @@
+package com.connectionpool;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import com.exceptions.ConnectionPoolException;
+
+/**
+ * PoolEngine defines the mechanism the ConnectionPool uses in order to hand out
+ * and take back its connections. The ConnectionPool singleton delegates to one
+ * engine which is chosen upon pool creation, this allows to switch between the
+ * legacy synchronized engine and the concurrent engine for comparison.
+ *
+ * @author SegevSinay
+ */
+interface PoolEngine {
+
+	/**
+	 * Grants a connection if available and waits up to the given timeout for a
+	 * connection to be returned. throws ConnectionPoolException once the timeout
+	 * has elapsed.
+	 */
+	Connection getConnection(long timeout, TimeUnit unit) throws ConnectionPoolException;
+
+	/**
+	 * Takes back a connection that was granted by getConnection().
+	 */
+	void returnConnection(Connection conn) throws ConnectionPoolException;
+
+	/**
+	 * Waits for all granted connections to return and closes every connection.
+	 */
+	void closeAllConnection() throws ConnectionPoolException;
+
+	/**
+	 * Returns the number of connections currently available.
+	 */
+	int getAvailableConnections();
+
+	/**
+	 * Returns the number of open connections (idle and granted).
+	 */
+	int getOpenConnections();
+
+	/**
+	 * Returns the number of dead connections that were evicted.
+	 */
+	int getEvictedConnections();
+}
@@ -0,0 +1,94 @@
+package com.connectionpool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * StatementCache keeps the prepared statements of a single pooled connection,
+ * keyed by their SQL text, so a repeated query skips the database compile step.
+ * The cache is bounded, once it is full the least recently used statement is
+ * closed and removed.
+ *
+ * NOTE: a connection is granted to one thread at a time, therefore the cache is
+ * not synchronized. statements taken from the cache must NOT be closed by the
+ * caller (their ResultSets should be closed as usual).
+ *
+ * @author SegevSinay
+ */
+class StatementCache {
+
+	private final Connection conn;
+	private final StatementCacheStats stats;
+	private final LinkedHashMap<String, PreparedStatement> statements;
+
+	/**
+	 * StatementCache Constructor. creates an empty LRU cache of the given size for
+	 * the given connection.
+	 */
+	StatementCache(Connection conn, final int maxSize, StatementCacheStats stats) {
+		this.conn = conn;
+		this.stats = stats;
+		this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() > maxSize) {
+					closeQuietly(eldest.getValue());
+					StatementCache.this.stats.evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached statement for the given SQL text, or prepares (and caches)
+	 * a new one.
+	 */
+	PreparedStatement prepareStatement(String sql) throws SQLException {
+		return prepareStatement(sql, Statement.NO_GENERATED_KEYS);
+	}
+
+	/**
+	 * Returns the cached statement for the given SQL text and generated keys flag
+	 * (Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS), or
+	 * prepares (and caches) a new one.
+	 */
+	PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "KEYS:" + sql : sql;
+		PreparedStatement pstmt = statements.get(key);
+		if (pstmt != null && !pstmt.isClosed()) {
+			stats.hits.increment();
+			return pstmt;
+		}
+		stats.misses.increment();
+		pstmt = conn.prepareStatement(sql, autoGeneratedKeys);
+		statements.put(key, pstmt);
+		return pstmt;
+	}
+
+	/**
+	 * closes all cached statements.
+	 */
+	void close() {
+		for (PreparedStatement pstmt : statements.values()) {
+			closeQuietly(pstmt);
+		}
+		statements.clear();
+	}
+
+	private static void closeQuietly(PreparedStatement pstmt) {
+		try {
+			pstmt.close();
+		} catch (SQLException e) {
+			// the statement is discarded anyway
+		}
+	}
+}
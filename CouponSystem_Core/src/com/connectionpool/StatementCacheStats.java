@@ -0,0 +1,55 @@
+package com.connectionpool;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StatementCacheStats counts the hits, misses and evictions of all the
+ * connections' statement caches.
+ *
+ * @author SegevSinay
+ */
+public class StatementCacheStats {
+
+	final LongAdder hits = new LongAdder();
+	final LongAdder misses = new LongAdder();
+	final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Returns the number of statements that were taken from a cache.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of statements that had to be prepared.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of statements that were closed to make room in a cache.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the hits / (hits + misses) ratio, or 0 if no statement was requested.
+	 */
+	public double getHitRate() {
+		long hit = getHits();
+		long total = hit + getMisses();
+		return total == 0 ? 0 : (double) hit / total;
+	}
+
+	/**
+	 * Returns a custom textual representation of the statistics.
+	 */
+	@Override
+	public String toString() {
+		return "StatementCacheStats [hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+				+ ", hitRate=" + String.format("%.2f", getHitRate()) + "]";
+	}
+}
@@ -0,0 +1,244 @@
+package com.connectionpool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.exceptions.ConnectionPoolException;
+import com.exceptions.CouponSystemException;
+import com.exceptions.DatabaseException;
+
+/**
+ * A UnitOfWork binds a single pooled connection to the current thread, so
+ * several DAO calls (e.g the deletes of a coupon removal) run on the same
+ * connection in one transaction which is committed once.
+ *
+ * While a unit of work is active the ConnectionPool grants its connection to
+ * every getConnection() of the thread and ignores returnConnection() of it, so
+ * the DAOs don't need to change. a DAO which manages its own transaction
+ * (setAutoCommit(false), commit / rollback, setAutoCommit(true)) runs within a
+ * savepoint instead: its rollback undoes only its own changes and its commit
+ * keeps them for the commit of the unit of work.
+ *
+ * Usage:
+ *
+ * <pre>
+ * UnitOfWork.execute(() -> {
+ * 	coupDao.removeCouponFromCustomerCoupon(coupon);
+ * 	coupDao.removeCoupon(coupon);
+ * 	return null;
+ * });
+ * </pre>
+ *
+ * or begin() ... commit() with close() in a finally block (close() rolls back
+ * the work if it was not committed). a unit of work which begins while another
+ * one is active joins it: only the outer one commits, and if the inner one is
+ * not committed the outer one can only roll back.
+ *
+ * @author SegevSinay
+ */
+public final class UnitOfWork {
+
+	private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * a piece of work which runs within a unit of work.
+	 */
+	public interface Work<T> {
+		T run() throws CouponSystemException;
+	}
+
+	private final ConnectionPool connPool;
+	private final Connection realConn;
+	private final Connection conn;
+	private final UnitOfWork outer;
+	private boolean committed;
+	private boolean closed;
+	private boolean rollbackOnly;
+
+	private UnitOfWork(ConnectionPool connPool, Connection realConn, UnitOfWork outer) {
+		this.connPool = connPool;
+		this.realConn = realConn;
+		this.outer = outer;
+		this.conn = outer != null ? outer.conn
+				: (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+						new Class<?>[] { Connection.class }, new BoundConnection(realConn));
+	}
+
+	/**
+	 * begins a unit of work on the current thread using a connection of the
+	 * ConnectionPool, or joins the unit of work which is already active.
+	 */
+	public static UnitOfWork begin() throws ConnectionPoolException {
+		UnitOfWork current = CURRENT.get();
+		if (current != null) {
+			return new UnitOfWork(current.connPool, current.realConn, current);
+		}
+		ConnectionPool connPool = ConnectionPool.getInstance();
+		Connection realConn = connPool.getConnection();
+		try {
+			realConn.setAutoCommit(false);
+		} catch (SQLException e) {
+			connPool.returnConnection(realConn);
+			throw new ConnectionPoolException("Unable to begin a transaction", e);
+		}
+		UnitOfWork work = new UnitOfWork(connPool, realConn, null);
+		CURRENT.set(work);
+		return work;
+	}
+
+	/**
+	 * runs the given work within a unit of work: commits if it completes and
+	 * rolls back if it throws.
+	 */
+	public static <T> T execute(Work<T> work) throws CouponSystemException {
+		UnitOfWork unit = begin();
+		try {
+			T result = work.run();
+			unit.commit();
+			return result;
+		} finally {
+			unit.close();
+		}
+	}
+
+	/**
+	 * commits the unit of work (a joined unit of work leaves the commit to the
+	 * outer one).
+	 */
+	public void commit() throws DatabaseException {
+		if (closed || committed) {
+			throw new DatabaseException("Unable to commit: the unit of work is already completed");
+		}
+		if (outer == null) {
+			if (rollbackOnly) {
+				throw new DatabaseException("Unable to commit: a joined unit of work has failed");
+			}
+			try {
+				realConn.commit();
+			} catch (SQLException e) {
+				throw new DatabaseException("Unable to commit the unit of work", e);
+			}
+		}
+		committed = true;
+	}
+
+	/**
+	 * completes the unit of work: rolls it back if it was not committed and
+	 * returns the connection to the pool (a joined unit of work only marks the
+	 * outer one to roll back).
+	 */
+	public void close() throws ConnectionPoolException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (outer != null) {
+			if (!committed) {
+				outer.rollbackOnly = true;
+			}
+			return;
+		}
+		CURRENT.remove();
+		try {
+			if (!committed) {
+				realConn.rollback();
+			}
+			realConn.setAutoCommit(true);
+		} catch (SQLException e) {
+			// the connection state is checked by the pool when it is borrowed again
+		} finally {
+			connPool.returnConnection(realConn);
+		}
+	}
+
+	/**
+	 * returns the connection of the unit of work.
+	 */
+	public Connection getConnection() {
+		return conn;
+	}
+
+	/**
+	 * returns the bound connection of the current thread's unit of work for the
+	 * given pool, or null if no unit of work is active.
+	 */
+	static Connection current(ConnectionPool connPool) {
+		UnitOfWork work = CURRENT.get();
+		return work != null && work.connPool == connPool ? work.conn : null;
+	}
+
+	/**
+	 * returns the pooled connection behind a bound connection (or the given
+	 * connection if it is not bound).
+	 */
+	static Connection unwrap(Connection conn) {
+		if (Proxy.isProxyClass(conn.getClass()) && Proxy.getInvocationHandler(conn) instanceof BoundConnection) {
+			return ((BoundConnection) Proxy.getInvocationHandler(conn)).conn;
+		}
+		return conn;
+	}
+
+	/**
+	 * the connection which is granted to the DAOs during a unit of work. close()
+	 * is ignored and the DAO's own transactions are turned into savepoints.
+	 */
+	private static class BoundConnection implements InvocationHandler {
+
+		private final Connection conn;
+		private final Deque<Savepoint> savepoints = new ArrayDeque<>();
+
+		BoundConnection(Connection conn) {
+			this.conn = conn;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				return null;
+			case "isClosed":
+				return false;
+			case "getAutoCommit":
+				return false;
+			case "setAutoCommit":
+				if (Boolean.FALSE.equals(args[0])) {
+					savepoints.push(conn.setSavepoint());
+				} else if (!savepoints.isEmpty()) {
+					conn.releaseSavepoint(savepoints.pop());
+				}
+				return null;
+			case "commit":
+				if (!savepoints.isEmpty()) {
+					conn.releaseSavepoint(savepoints.pop());
+					savepoints.push(conn.setSavepoint());
+				}
+				return null;
+			case "rollback":
+				if (args == null && !savepoints.isEmpty()) {
+					conn.rollback(savepoints.pop());
+					savepoints.push(conn.setSavepoint());
+					return null;
+				}
+				break;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			default:
+				break;
+			}
+			try {
+				return method.invoke(conn, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -1,11 +1,17 @@
 package com.dao;
 
 import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import com.exceptions.CouponSystemException;
+import com.exceptions.UncheckedCouponSystemException;
 
 import com.beans.Company;
+import com.beans.CompanyRemovalReport;
 import com.beans.Coupon;
+import com.beans.CouponFilter;
+import com.beans.Page;
 
 /**
  * Data Access Object is a design pattern that provides an abstract interface to
@@ -15,13 +21,18 @@ import com.beans.Coupon;
  * implementation is done by Concrete classes such as the CompanyDBDAO class
  * which interacts with the Driver and with the Database thought SQL queries.
  * 
+ * NOTE: the methods which change or read a specific company record use the ID of
+ * the given company when it is set (e.g a company which was created or retrieved by
+ * the DAO), only a company without an ID is looked up by its unique name.
+ * 
  * @author SegevSinay
  *
  */
 public interface CompanyDAO {
 	/**
 	 * Exports the detailed data of the record we want to create from Java to the
-	 * database for the requested company
+	 * database for the requested company. the generated company ID is set into the
+	 * given company.
 	 */
 	public void createCompany(Company company) throws CouponSystemException;
 
@@ -50,6 +61,13 @@ public interface CompanyDAO {
 	 */
 	public Collection<Company> getAllCompanies() throws CouponSystemException;
 
+	/**
+	 * Retrieves a page of up to limit company records whose ID is greater than
+	 * afterId, ordered by ID (keyset pagination). the first page is retrieved
+	 * using afterId 0, the next page using the returned page's next cursor.
+	 */
+	public Page<Company> getCompaniesPage(long afterId, int limit) throws CouponSystemException;
+
 	/**
 	 * Retrieves a specific company coupons by creating a joined table of both
 	 * coupons and company_coupon tables, once table are joined it extracts all
@@ -59,6 +77,40 @@ public interface CompanyDAO {
 	 */
 	public Collection<Coupon> getCoupons(Company company) throws CouponSystemException;
 
+	/**
+	 * Retrieves a specific company coupons which match the given filter (coupon
+	 * type, max price and/or max end date). the filter is applied within the
+	 * database query, so only the matching records are transferred.
+	 */
+	public Collection<Coupon> getCoupons(Company company, CouponFilter filter) throws CouponSystemException;
+
+	/**
+	 * Streams a specific company coupons using a forward-only cursor which
+	 * reads fetchSize records at a time. the stream holds a pooled connection and
+	 * MUST be closed (e.g using try-with-resources) in order to return it to the
+	 * connection pool.
+	 */
+	public Stream<Coupon> streamCoupons(Company company, int fetchSize) throws CouponSystemException;
+
+	/**
+	 * Passes a specific company coupons, one at a time, to the given action (see
+	 * streamCoupons). the connection is returned to the pool once done.
+	 */
+	public default void forEachCoupon(Company company, int fetchSize, Consumer<Coupon> action)
+			throws CouponSystemException {
+		try (Stream<Coupon> coupons = streamCoupons(company, fetchSize)) {
+			coupons.forEach(action);
+		} catch (UncheckedCouponSystemException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Retrieves a page of up to limit company coupons whose ID is greater than
+	 * afterId, ordered by ID (keyset pagination).
+	 */
+	public Page<Coupon> getCouponsPage(Company company, long afterId, int limit) throws CouponSystemException;
+
 	/**
 	 * Checks for the combine key of company's name and password, if such a
 	 * combination exist within the companies records it will return true else it
@@ -66,6 +118,13 @@ public interface CompanyDAO {
 	 */
 	public boolean login(String compName, String password) throws CouponSystemException;
 
+	/**
+	 * Checks the company's name and password (like login()) and returns the
+	 * company's ID, or 0 if the name and password don't match, so the logged in
+	 * company doesn't have to be read again by its name.
+	 */
+	public long authenticate(String compName, String password) throws CouponSystemException;
+
 	/**
 	 * Retrieves a specific company ID using Company Name. Although the most
 	 * reliable unique key column is the Company's ID column, since Company's name
@@ -100,6 +159,14 @@ public interface CompanyDAO {
 	 */
 	void removeCompanyFromCompanyCoupon(Company company) throws CouponSystemException;
 
+	/**
+	 * Removes a specific company together with all its coupons: their
+	 * customer_coupon, coupons and company_coupon records and the company record,
+	 * using one set based delete per table (keyed on the company ID through
+	 * company_coupon) in a single transaction. returns the removed records counts.
+	 */
+	CompanyRemovalReport removeCompanyWithCoupons(Company company) throws CouponSystemException;
+
 	/**
 	 * Query a specific Email address. returns the actual Email address if email
 	 * exist or null if doesn't. this allow to perform an Email availability check
@@ -2,13 +2,21 @@ package com.dao;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import com.beans.Company;
 import com.beans.Coupon;
+import com.beans.CouponFilter;
 import com.beans.CouponType;
+import com.beans.ExpirationReport;
+import com.beans.Page;
 import com.exceptions.ConnectionPoolException;
 import com.exceptions.CouponSystemException;
 import com.exceptions.DatabaseException;
+import com.exceptions.UncheckedCouponSystemException;
 
 /**
  * Data Access Object is a design pattern that provides an abstract interface to
@@ -18,6 +26,10 @@ import com.exceptions.DatabaseException;
  * implementation is done by Concrete classes such as the CouponDBDAO class
  * which interacts with the Driver and with the Database thought SQL queries.
  * 
+ * NOTE: the methods which change or read a specific coupon record use the ID of
+ * the given coupon when it is set (e.g a coupon which was created or retrieved by
+ * the DAO), only a coupon without an ID is looked up by its unique title.
+ * 
  * @author SegevSinay
  *
  */
@@ -25,6 +37,7 @@ public interface CouponDAO {
 	/**
 	 * Creates a coupon within the coupons table. (Exports the detailed data of the
 	 * record we want to create from Java to the database for the requested coupon)
+	 * the generated coupon ID is set into the given coupon.
 	 */
 	void createCoupon(Coupon coupon) throws DatabaseException, ConnectionPoolException;
 
@@ -53,6 +66,30 @@ public interface CouponDAO {
 	 */
 	Collection<Coupon> getAllCoupons() throws DatabaseException, ConnectionPoolException;
 
+	/**
+	 * Streams all coupon records using a forward-only cursor which reads fetchSize
+	 * records at a time, so the full coupons table is never held in memory. the
+	 * stream holds a pooled connection and MUST be closed (e.g using
+	 * try-with-resources) in order to return it to the connection pool.
+	 */
+	Stream<Coupon> streamAllCoupons(int fetchSize) throws DatabaseException, ConnectionPoolException;
+
+	/**
+	 * Passes all coupon records, one at a time, to the given action (see
+	 * streamAllCoupons). the connection is returned to the pool once done.
+	 */
+	default void forEachCoupon(int fetchSize, Consumer<Coupon> action)
+			throws DatabaseException, ConnectionPoolException {
+		try (Stream<Coupon> coupons = streamAllCoupons(fetchSize)) {
+			coupons.forEach(action);
+		} catch (UncheckedCouponSystemException e) {
+			if (e.getCause() instanceof ConnectionPoolException) {
+				throw (ConnectionPoolException) e.getCause();
+			}
+			throw new DatabaseException(e.getMessage(), e.getCause().getCause());
+		}
+	}
+
 	/**
 	 * Retrieves all coupon record for coupons table by coupon Type. (Imports the
 	 * detail of the full coupons from DB to Java and then creates the coupon list
@@ -60,6 +97,25 @@ public interface CouponDAO {
 	 */
 	Collection<Coupon> getCouponByType(CouponType coupontype) throws DatabaseException, ConnectionPoolException;
 
+	/**
+	 * Counts the coupon records of each coupon type (category).
+	 */
+	Map<CouponType, Integer> getCouponCountByType() throws DatabaseException, ConnectionPoolException;
+
+	/**
+	 * Retrieves all coupon records which match the given filter (coupon type, max
+	 * price and/or max end date). the filter is applied within the database query,
+	 * so only the matching records are transferred.
+	 */
+	Collection<Coupon> getCoupons(CouponFilter filter) throws DatabaseException, ConnectionPoolException;
+
+	/**
+	 * Retrieves a page of up to limit coupon records whose ID is greater than
+	 * afterId, ordered by ID (keyset pagination). the first page is retrieved
+	 * using afterId 0, the next page using the returned page's next cursor.
+	 */
+	Page<Coupon> getCouponsPage(long afterId, int limit) throws DatabaseException, ConnectionPoolException;
+
 	// my addition :
 	
 	/**
@@ -69,6 +125,20 @@ public interface CouponDAO {
 	 */
 	void updateCompanyCoupon(Coupon coupon, Company company) throws CouponSystemException;
 
+	/**
+	 * Creates the given coupons within the coupons table together with their
+	 * company_coupon records for the given company, using batched inserts in a
+	 * single transaction (either all coupons are created or none). the generated
+	 * coupon IDs are set into the given coupons.
+	 */
+	void createCoupons(List<Coupon> coupons, Company company) throws DatabaseException, ConnectionPoolException;
+
+	/**
+	 * Returns which of the given coupon titles already exist within the coupons
+	 * table.
+	 */
+	Set<String> getExistingTitles(Collection<String> titles) throws DatabaseException, ConnectionPoolException;
+
 	/**
 	 * Removes a specific coupon record from customer_coupons joined table.
 	 */
@@ -107,4 +177,28 @@ public interface CouponDAO {
 	 */
 	List<Coupon> collectExpiredCoupons() throws DatabaseException, ConnectionPoolException;
 
+	/**
+	 * Removes all expired coupons (based on their end date) together with their
+	 * customer_coupon and company_coupon records using set based deletes. the
+	 * coupons are removed in chunks of up to chunkSize coupons, each chunk in its
+	 * own transaction. returns the removal counts and run time.
+	 */
+	ExpirationReport removeExpiredCoupons(int chunkSize) throws DatabaseException, ConnectionPoolException;
+
+	/**
+	 * Notifies that a coupon record was changed without using this DAO (e.g its
+	 * amount was decreased by a purchase). a DAO which keeps coupons in memory
+	 * should drop its copy of the coupon.
+	 */
+	default void refreshCoupon(String title) {
+	}
+
+	/**
+	 * Notifies that coupon records were changed or removed without using this DAO
+	 * (e.g removed together with their company). a DAO which keeps coupons in
+	 * memory should drop its copies of the coupons.
+	 */
+	default void refreshCoupons() {
+	}
+
 }
@@ -1,10 +1,16 @@
 package com.dao;
 
 import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import com.beans.Coupon;
+import com.beans.CouponFilter;
 import com.beans.Customer;
+import com.beans.Page;
+import com.beans.PurchaseResult;
 import com.exceptions.CouponSystemException;
+import com.exceptions.UncheckedCouponSystemException;
 
 /**
  * Data Access Object is a design pattern that provides an abstract interface to
@@ -14,6 +20,10 @@ import com.exceptions.CouponSystemException;
  * implementation is done by Concrete classes such as the CustomerDBDAO class
  * which interacts with the Driver and with the Database thought SQL queries.
  * 
+ * NOTE: the methods which change or read a specific customer record use the ID of
+ * the given customer when it is set (e.g a customer which was created or retrieved by
+ * the DAO), only a customer without an ID is looked up by its unique name.
+ * 
  * @author SegevSinay
  *
  */
@@ -21,7 +31,7 @@ public interface CustomerDAO {
 	/**
 	 * Creates a specific customer in customers table. (Exports the detailed data of
 	 * the record we want to create from Java to the database for the requested
-	 * customer).
+	 * customer). the generated customer ID is set into the given customer.
 	 */
 	public void createCustomer(Customer customer) throws CouponSystemException;
 	/**
@@ -46,6 +56,13 @@ public interface CustomerDAO {
 	 * the all customers list)
 	 */
 	public Collection<Customer> getAllCustomer() throws CouponSystemException;
+
+	/**
+	 * Retrieves a page of up to limit customer records whose ID is greater than
+	 * afterId, ordered by ID (keyset pagination). the first page is retrieved
+	 * using afterId 0, the next page using the returned page's next cursor.
+	 */
+	public Page<Customer> getCustomersPage(long afterId, int limit) throws CouponSystemException;
 	/**
 	 * Retrieves a specific customer coupons by creating a joined table of both
 	 * coupons and customer_coupon tables, once table are joined it extracts all
@@ -54,6 +71,34 @@ public interface CustomerDAO {
 	 * coupon list using these details)
 	 */
 	public Collection<Coupon> getCoupons(Customer customer) throws CouponSystemException;
+
+	/**
+	 * Retrieves a specific customer's purchased coupons which match the given
+	 * filter (coupon type, max price and/or max end date). the filter is applied
+	 * within the database query, so only the matching records are transferred.
+	 */
+	public Collection<Coupon> getCoupons(Customer customer, CouponFilter filter) throws CouponSystemException;
+
+	/**
+	 * Streams a specific customer's purchased coupons using a forward-only cursor which
+	 * reads fetchSize records at a time. the stream holds a pooled connection and
+	 * MUST be closed (e.g using try-with-resources) in order to return it to the
+	 * connection pool.
+	 */
+	public Stream<Coupon> streamCoupons(Customer customer, int fetchSize) throws CouponSystemException;
+
+	/**
+	 * Passes a specific customer's purchased coupons, one at a time, to the given action (see
+	 * streamCoupons). the connection is returned to the pool once done.
+	 */
+	public default void forEachCoupon(Customer customer, int fetchSize, Consumer<Coupon> action)
+			throws CouponSystemException {
+		try (Stream<Coupon> coupons = streamCoupons(customer, fetchSize)) {
+			coupons.forEach(action);
+		} catch (UncheckedCouponSystemException e) {
+			throw e.getCause();
+		}
+	}
 	/**
 	 * Checks for the combine key of customer name and password, if such a
 	 * combination exist within the customers records it will return true else it
@@ -61,6 +106,13 @@ public interface CustomerDAO {
 	 */
 	public boolean login(String custName, String password) throws CouponSystemException;
 
+	/**
+	 * Checks the customer's name and password (like login()) and returns the
+	 * customer's ID, or 0 if the name and password don't match, so the logged in
+	 * customer doesn't have to be read again by its name.
+	 */
+	public long authenticate(String custName, String password) throws CouponSystemException;
+
 	// my additions:
 	/**
 	 * Creates a new record in Customer_Coupon table. (Exports the detail for the
@@ -68,6 +120,14 @@ public interface CustomerDAO {
 	 * requested customer and coupon using their Id.)
 	 */
 	public void purchaseCoupon(Customer customer, Coupon coupon) throws CouponSystemException;
+	/**
+	 * Purchases a coupon (by its ID, or by its title if the ID is not set) for a
+	 * customer (by its ID) in a single transaction on a single connection: the
+	 * coupon amount is decremented only if the coupon is in stock and not
+	 * expired, and then the customer_coupon record is created. returns PURCHASED
+	 * if both succeeded, otherwise nothing is changed and the reason is returned.
+	 */
+	public PurchaseResult purchaseCoupon(long custId, Coupon coupon) throws CouponSystemException;
 	/**
 	 * Retrieves a specific customer ID using customer Name. Although the most
 	 * reliable unique key column is the customer's ID column, since customer name
@@ -0,0 +1,333 @@
+package com.dbdao;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.beans.Company;
+import com.beans.Coupon;
+import com.beans.CouponFilter;
+import com.beans.CouponType;
+import com.beans.ExpirationReport;
+import com.beans.Page;
+import com.dao.CouponDAO;
+import com.exceptions.ConnectionPoolException;
+import com.exceptions.CouponSystemException;
+import com.exceptions.DatabaseException;
+
+/**
+ * CachingCouponDAO is a read-through cache in front of another CouponDAO
+ * (normally the CouponDBDAO). getCoupon() and getCouponByTitle() are answered
+ * from memory when possible, any other operation is passed to the wrapped DAO.
+ *
+ * The cache is bounded: once it holds maxSize coupons the least recently used
+ * coupon is removed, and a coupon is read again from the database once it has
+ * been cached longer than the time to live. A coupon is removed from the cache
+ * when it is created, updated or removed through this DAO, or when
+ * refreshCoupon() is called (e.g after a purchase changed its amount), and all
+ * coupons are removed when refreshCoupons() is called.
+ *
+ * NOTE: changes made to the database by other systems become visible only
+ * after the time to live. coupons are copied in and out of the cache, so the
+ * callers may change the returned coupons freely.
+ *
+ * @author SegevSinay
+ */
+public class CachingCouponDAO implements CouponDAO {
+
+	private final CouponDAO couponDao;
+	private final long ttlNanos;
+	private final CouponCacheStats stats = new CouponCacheStats();
+
+	// the cached coupons by ID, least recently used first
+	private final LinkedHashMap<Long, CachedCoupon> couponsById;
+	private final Map<String, Long> idsByTitle = new HashMap<>();
+
+	// incremented on every invalidation, a coupon that was read from the database
+	// while the cache was invalidated is not cached (it might be stale)
+	private long version;
+
+	/**
+	 * CachingCouponDAO Constructor. caches up to maxSize coupons, each for up to
+	 * ttl milliseconds.
+	 */
+	public CachingCouponDAO(CouponDAO couponDao, final int maxSize, long ttl) {
+		this.couponDao = couponDao;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+		this.couponsById = new LinkedHashMap<Long, CachedCoupon>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CachedCoupon> eldest) {
+				if (size() > maxSize) {
+					idsByTitle.remove(eldest.getValue().coupon.getTitle());
+					stats.evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	@Override
+	public void createCoupon(Coupon coupon) throws DatabaseException, ConnectionPoolException {
+		try {
+			couponDao.createCoupon(coupon);
+		} finally {
+			invalidate(coupon);
+		}
+	}
+
+	@Override
+	public void removeCoupon(Coupon coupon) throws DatabaseException, ConnectionPoolException {
+		try {
+			couponDao.removeCoupon(coupon);
+		} finally {
+			invalidate(coupon);
+		}
+	}
+
+	@Override
+	public void updateCoupon(Coupon coupon) throws DatabaseException, ConnectionPoolException {
+		try {
+			couponDao.updateCoupon(coupon);
+		} finally {
+			invalidate(coupon);
+		}
+	}
+
+	@Override
+	public Coupon getCoupon(long id) throws DatabaseException, ConnectionPoolException {
+		long loadVersion;
+		synchronized (this) {
+			CachedCoupon cached = lookup(id);
+			if (cached != null) {
+				return copy(cached.coupon);
+			}
+			loadVersion = version;
+		}
+		Coupon coupon = couponDao.getCoupon(id);
+		cache(coupon, loadVersion);
+		return coupon;
+	}
+
+	@Override
+	public Coupon getCouponByTitle(String title) throws DatabaseException, ConnectionPoolException {
+		long loadVersion;
+		synchronized (this) {
+			Long id = idsByTitle.get(title);
+			CachedCoupon cached = id == null ? null : lookup(id);
+			if (cached != null) {
+				return copy(cached.coupon);
+			}
+			if (id == null) {
+				stats.misses.increment();
+			}
+			loadVersion = version;
+		}
+		Coupon coupon = couponDao.getCouponByTitle(title);
+		cache(coupon, loadVersion);
+		return coupon;
+	}
+
+	@Override
+	public long getCouponId(String title) throws DatabaseException, ConnectionPoolException {
+		synchronized (this) {
+			Long id = idsByTitle.get(title);
+			if (id != null && lookup(id) != null) {
+				return id;
+			}
+		}
+		return couponDao.getCouponId(title);
+	}
+
+	@Override
+	public Collection<Coupon> getAllCoupons() throws DatabaseException, ConnectionPoolException {
+		return couponDao.getAllCoupons();
+	}
+
+	@Override
+	public Stream<Coupon> streamAllCoupons(int fetchSize) throws DatabaseException, ConnectionPoolException {
+		return couponDao.streamAllCoupons(fetchSize);
+	}
+
+	@Override
+	public Collection<Coupon> getCouponByType(CouponType coupontype) throws DatabaseException, ConnectionPoolException {
+		return couponDao.getCouponByType(coupontype);
+	}
+
+	@Override
+	public Map<CouponType, Integer> getCouponCountByType() throws DatabaseException, ConnectionPoolException {
+		return couponDao.getCouponCountByType();
+	}
+
+	@Override
+	public Collection<Coupon> getCoupons(CouponFilter filter) throws DatabaseException, ConnectionPoolException {
+		return couponDao.getCoupons(filter);
+	}
+
+	@Override
+	public Page<Coupon> getCouponsPage(long afterId, int limit) throws DatabaseException, ConnectionPoolException {
+		return couponDao.getCouponsPage(afterId, limit);
+	}
+
+	@Override
+	public void updateCompanyCoupon(Coupon coupon, Company company) throws CouponSystemException {
+		couponDao.updateCompanyCoupon(coupon, company);
+	}
+
+	@Override
+	public void createCoupons(List<Coupon> coupons, Company company)
+			throws DatabaseException, ConnectionPoolException {
+		try {
+			couponDao.createCoupons(coupons, company);
+		} finally {
+			for (Coupon coupon : coupons) {
+				invalidate(coupon);
+			}
+		}
+	}
+
+	@Override
+	public Set<String> getExistingTitles(Collection<String> titles) throws DatabaseException, ConnectionPoolException {
+		return couponDao.getExistingTitles(titles);
+	}
+
+	@Override
+	public void removeCouponFromCustomerCoupon(Coupon coupon) throws DatabaseException, ConnectionPoolException {
+		couponDao.removeCouponFromCustomerCoupon(coupon);
+	}
+
+	@Override
+	public void removeCouponFromCompanyCoupon(Coupon coupon) throws DatabaseException, ConnectionPoolException {
+		couponDao.removeCouponFromCompanyCoupon(coupon);
+	}
+
+	@Override
+	public List<Coupon> collectExpiredCoupons() throws DatabaseException, ConnectionPoolException {
+		return couponDao.collectExpiredCoupons();
+	}
+
+	@Override
+	public ExpirationReport removeExpiredCoupons(int chunkSize) throws DatabaseException, ConnectionPoolException {
+		try {
+			return couponDao.removeExpiredCoupons(chunkSize);
+		} finally {
+			invalidateAll();
+		}
+	}
+
+	@Override
+	public void refreshCoupon(String title) {
+		invalidate(new Coupon(title));
+		couponDao.refreshCoupon(title);
+	}
+
+	@Override
+	public void refreshCoupons() {
+		invalidateAll();
+		couponDao.refreshCoupons();
+	}
+
+	/**
+	 * removes all the coupons from the cache.
+	 */
+	public synchronized void invalidateAll() {
+		version++;
+		stats.invalidations.add(couponsById.size());
+		couponsById.clear();
+		idsByTitle.clear();
+	}
+
+	/**
+	 * Returns the cache statistics.
+	 */
+	public CouponCacheStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Returns the number of cached coupons.
+	 */
+	public synchronized int size() {
+		return couponsById.size();
+	}
+
+	/**
+	 * returns the cached coupon if it has not expired, counts the hit or miss.
+	 */
+	private CachedCoupon lookup(long id) {
+		CachedCoupon cached = couponsById.get(id);
+		if (cached != null && System.nanoTime() - cached.since > ttlNanos) {
+			couponsById.remove(id);
+			idsByTitle.remove(cached.coupon.getTitle());
+			stats.expirations.increment();
+			cached = null;
+		}
+		if (cached == null) {
+			stats.misses.increment();
+		} else {
+			stats.hits.increment();
+		}
+		return cached;
+	}
+
+	/**
+	 * caches a copy of a coupon that was read from the database, unless the cache
+	 * was invalidated meanwhile.
+	 */
+	private synchronized void cache(Coupon coupon, long loadVersion) {
+		if (coupon == null || loadVersion != version) {
+			return;
+		}
+		couponsById.put(coupon.getId(), new CachedCoupon(copy(coupon), System.nanoTime()));
+		idsByTitle.put(coupon.getTitle(), coupon.getId());
+	}
+
+	/**
+	 * removes a coupon (by its title and ID) from the cache.
+	 */
+	private synchronized void invalidate(Coupon coupon) {
+		version++;
+		Long id = idsByTitle.remove(coupon.getTitle());
+		if (id == null && coupon.getId() != 0) {
+			id = coupon.getId();
+		}
+		if (id != null) {
+			CachedCoupon cached = couponsById.remove(id);
+			if (cached != null) {
+				idsByTitle.remove(cached.coupon.getTitle());
+				stats.invalidations.increment();
+			}
+		}
+	}
+
+	private static Coupon copy(Coupon coupon) {
+		return new Coupon(coupon.getId(), coupon.getTitle(), copy(coupon.getStartDate()), copy(coupon.getEndDate()),
+				coupon.getAmount(), coupon.getType(), coupon.getMessage(), coupon.getPrice(), coupon.getImage());
+	}
+
+	private static Date copy(Date date) {
+		return date == null ? null : (Date) date.clone();
+	}
+
+	/**
+	 * a cached coupon and the time it was read from the database.
+	 */
+	private static class CachedCoupon {
+		final Coupon coupon;
+		final long since;
+
+		CachedCoupon(Coupon coupon, long since) {
+			this.coupon = coupon;
+			this.since = since;
+		}
+	}
+}
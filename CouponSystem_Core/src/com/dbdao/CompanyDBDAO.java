@@ -3,12 +3,17 @@ package com.dbdao;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 import com.beans.Company;
+import com.beans.CompanyRemovalReport;
 import com.beans.Coupon;
+import com.beans.CouponFilter;
+import com.beans.Page;
 import com.beans.CouponType;
 import com.connectionpool.ConnectionPool;
 
@@ -18,6 +23,7 @@ import com.dao.CompanyDAO;
 import com.exceptions.ConnectionPoolException;
 import com.exceptions.CouponSystemException;
 import com.exceptions.DatabaseException;
+import com.utilityclasses.PasswordHasher;
 
 /**
  * CompanyDBDAO class implements the CompanyDAO interface. Its main purpose is
@@ -25,7 +31,10 @@ import com.exceptions.DatabaseException;
  * 
  * Methods within this class are based on following pattern: (1) Acquiring
  * connection from connection pool. (2) performing SQL queries and/or updates
- * using prepared statements. (3) Returning connection back to connection pool
+ * using prepared statements taken from the connection's statement cache
+ * (connPool.prepareStatement), the statements are NOT closed since they are
+ * reused by the next call, only the result sets are closed. (3) Returning
+ * connection back to connection pool
  * 
  * NOTE : (a) every method that requires a connection must request a connection
  * from the connection pool. once an action gets terminated or completed the
@@ -37,7 +46,7 @@ import com.exceptions.DatabaseException;
  */
 public class CompanyDBDAO implements CompanyDAO {
 
-	private ConnectionPool connPool;
+	private final ConnectionPool connPool;
 
 	/**
 	 * Default Constructor
@@ -53,14 +62,14 @@ public class CompanyDBDAO implements CompanyDAO {
 	@Override
 	public void createCompany(Company company) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		String sql = "INSERT INTO Companies (COMP_NAME,PASSWORD,EMAIL) VALUES (?,?,?)";
+		String sql = "INSERT INTO Companies (COMP_NAME,EMAIL,PASSWORD_HASH) VALUES (?,?,?)";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql, Statement.RETURN_GENERATED_KEYS);
 			pstmt.setString(1, company.getCompName());
-			pstmt.setString(2, company.getPassword());
-			pstmt.setString(3, company.getEmail());
+			pstmt.setString(2, company.getEmail());
+			pstmt.setString(3, PasswordHasher.hash(company.getPassword()));
 			pstmt.executeUpdate();
-			pstmt.close();
+			company.setId(GeneratedKeys.id(pstmt));
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to create company" + company.getCompName(), e);
 		} finally {
@@ -75,13 +84,12 @@ public class CompanyDBDAO implements CompanyDAO {
 	@Override
 	public void removeCompany(Company company) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long compId = getCompanyId(company.getCompName());
 		String sql = "DELETE FROM companies WHERE ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long compId = companyId(conn, company);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, compId);
 			pstmt.executeUpdate();
-			pstmt.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to remove Company '" + company.getCompName() + "' records!", e);
 		} finally {
@@ -102,13 +110,12 @@ public class CompanyDBDAO implements CompanyDAO {
 	@Override
 	public void removeCompanyFromCompanyCoupon(Company company) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long compId = getCompanyId(company.getCompName());
 		String sql = "DELETE FROM company_coupon WHERE COMP_ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long compId = companyId(conn, company);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, compId);
 			pstmt.executeUpdate();
-			pstmt.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to remove Company '" + company.getCompName() + "' records!", e);
 		} finally {
@@ -117,20 +124,69 @@ public class CompanyDBDAO implements CompanyDAO {
 	}
 
 	/**
-	 * updates a specific company data.
+	 * Removes a specific company together with all its coupons using set based
+	 * deletes in a single transaction. the customer_coupon and coupons records are
+	 * selected through the company's company_coupon records, so they are deleted
+	 * before the company_coupon records themselves.
+	 */
+	@Override
+	public CompanyRemovalReport removeCompanyWithCoupons(Company company)
+			throws DatabaseException, ConnectionPoolException {
+		long start = System.currentTimeMillis();
+		CompanyRemovalReport report = new CompanyRemovalReport();
+		Connection conn = connPool.getConnection();
+		String customerSql = "DELETE FROM customer_coupon WHERE COUPON_ID IN (SELECT COUPON_ID FROM company_coupon WHERE COMP_ID=?)";
+		String couponSql = "DELETE FROM coupons WHERE ID IN (SELECT COUPON_ID FROM company_coupon WHERE COMP_ID=?)";
+		String companyCouponSql = "DELETE FROM company_coupon WHERE COMP_ID=?";
+		String companySql = "DELETE FROM companies WHERE ID=?";
+		try {
+			conn.setAutoCommit(false);
+			try {
+				long compId = companyId(conn, company);
+				PreparedStatement pstmt = connPool.prepareStatement(conn, customerSql);
+				pstmt.setLong(1, compId);
+				report.setRemovedCustomerCoupons(pstmt.executeUpdate());
+				pstmt = connPool.prepareStatement(conn, couponSql);
+				pstmt.setLong(1, compId);
+				report.setRemovedCoupons(pstmt.executeUpdate());
+				pstmt = connPool.prepareStatement(conn, companyCouponSql);
+				pstmt.setLong(1, compId);
+				report.setRemovedCompanyCoupons(pstmt.executeUpdate());
+				pstmt = connPool.prepareStatement(conn, companySql);
+				pstmt.setLong(1, compId);
+				report.setRemovedCompanies(pstmt.executeUpdate());
+				conn.commit();
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to remove Company '" + company.getCompName() + "' records!", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+		report.setElapsedMillis(System.currentTimeMillis() - start);
+		return report;
+	}
+
+	/**
+	 * updates a specific company data. the password hash is kept when the
+	 * company's password is null (e.g a company which was read from the
+	 * database, only the password hash is stored).
 	 */
 	@Override
 	public void updateCompany(Company company) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long compId = getCompanyId(company.getCompName());
-		String sql = "UPDATE Companies SET PASSWORD=?, EMAIL=? WHERE ID=?";
+		String sql = "UPDATE Companies SET EMAIL=?, PASSWORD_HASH=COALESCE(?, PASSWORD_HASH) WHERE ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
-			pstmt.setString(1, company.getPassword());
-			pstmt.setString(2, company.getEmail());
+			long compId = companyId(conn, company);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+			pstmt.setString(1, company.getEmail());
+			pstmt.setString(2, company.getPassword() == null ? null : PasswordHasher.hash(company.getPassword()));
 			pstmt.setLong(3, compId);
 			pstmt.executeUpdate();
-			pstmt.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to update " + company.getCompName() + " records!", e);
 		} finally {
@@ -149,17 +205,16 @@ public class CompanyDBDAO implements CompanyDAO {
 		Connection conn = connPool.getConnection();
 		String sql = "SELECT * FROM companies WHERE ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, id);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
 				company = new Company();
 				company.setId(rs.getLong("ID"));
 				company.setCompName(rs.getString("COMP_NAME"));
-				company.setPassword(rs.getString("PASSWORD"));
 				company.setEmail(rs.getString("EMAIL"));
 			}
-			pstmt.close();
+			rs.close();
 		} catch (SQLException e) {
 			System.out.println(
 					"unable to retrive '" + company.getCompName() + "'company records! \ncause: " + e.getMessage());
@@ -181,17 +236,16 @@ public class CompanyDBDAO implements CompanyDAO {
 		List<Company> allCompanies = new ArrayList<>();
 		String sql = "SELECT * FROM companies";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
 				company = new Company();
 				company.setId(rs.getLong("ID"));
 				company.setCompName(rs.getString("COMP_NAME"));
-				company.setPassword(rs.getString("PASSWORD"));
 				company.setEmail(rs.getString("EMAIL"));
 				allCompanies.add(company);
 			}
-			pstmt.close();
+			rs.close();
 			return allCompanies;
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive Data!", e);
@@ -200,6 +254,37 @@ public class CompanyDBDAO implements CompanyDAO {
 		}
 	}
 
+	/**
+	 * Retrieves a page of company records following the given ID. one extra record
+	 * is read in order to tell if there is a next page.
+	 */
+	@Override
+	public Page<Company> getCompaniesPage(long afterId, int limit) throws DatabaseException, ConnectionPoolException {
+		Connection conn = connPool.getConnection();
+		Company company = null;
+		List<Company> companies = new ArrayList<>();
+		String sql = "SELECT * FROM companies WHERE ID>? ORDER BY ID FETCH FIRST ? ROWS ONLY";
+		try {
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+			pstmt.setLong(1, afterId);
+			pstmt.setInt(2, limit + 1);
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next()) {
+				company = new Company();
+				company.setId(rs.getLong("ID"));
+				company.setCompName(rs.getString("COMP_NAME"));
+				company.setEmail(rs.getString("EMAIL"));
+				companies.add(company);
+			}
+			rs.close();
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to retrive Data!", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+		return Page.of(companies, limit, afterId, Company::getId);
+	}
+
 	/**
 	 * Retrieves a specific company coupons by creating a joined table of both
 	 * coupons and company_coupon tables, once table are joined it extracts all
@@ -212,10 +297,10 @@ public class CompanyDBDAO implements CompanyDAO {
 		Connection conn = connPool.getConnection();
 		Coupon coupon = null;
 		List<Coupon> allCoupons = new ArrayList<>();
-		long compId = getCompanyId(company.getCompName());
 		String sql = "SELECT * FROM coupons INNER JOIN company_coupon ON coupons.id=company_coupon.coupon_id WHERE COMP_ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long compId = companyId(conn, company);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, compId);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
@@ -231,7 +316,7 @@ public class CompanyDBDAO implements CompanyDAO {
 				coupon.setImage(rs.getString("IMAGE"));
 				allCoupons.add(coupon);
 			}
-			pstmt.close();
+			rs.close();
 			return allCoupons;
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive Data!", e);
@@ -240,6 +325,82 @@ public class CompanyDBDAO implements CompanyDAO {
 		}
 	}
 
+	/**
+	 * Retrieves a specific company coupons which match the given filter. the
+	 * filter conditions are added to the joined query's WHERE clause.
+	 */
+	@Override
+	public Collection<Coupon> getCoupons(Company company, CouponFilter filter)
+			throws DatabaseException, ConnectionPoolException {
+		long compId = company.getId() != 0 ? company.getId() : getCompanyId(company.getCompName());
+		Connection conn = connPool.getConnection();
+		List<Coupon> coupons = new ArrayList<>();
+		String sql = CouponQueries.where(
+				"SELECT * FROM coupons INNER JOIN company_coupon ON coupons.id=company_coupon.coupon_id WHERE COMP_ID=?",
+				filter, true);
+		try {
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+			pstmt.setLong(1, compId);
+			CouponQueries.bind(pstmt, 2, filter);
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next()) {
+				coupons.add(CouponQueries.readCoupon(rs));
+			}
+			rs.close();
+			return coupons;
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to retrive Data!", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+	}
+
+	/**
+	 * Streams a specific company coupons. the statement is not taken from the
+	 * statement cache since it is held (with the connection) until the stream is
+	 * closed.
+	 */
+	@Override
+	public Stream<Coupon> streamCoupons(Company company, int fetchSize)
+			throws DatabaseException, ConnectionPoolException {
+		long compId = company.getId() != 0 ? company.getId() : getCompanyId(company.getCompName());
+		Connection conn = connPool.getConnection();
+		PreparedStatement pstmt = ResultSetStream.prepare(connPool, conn,
+				"SELECT * FROM coupons INNER JOIN company_coupon ON coupons.id=company_coupon.coupon_id WHERE COMP_ID=?",
+				fetchSize, compId);
+		return ResultSetStream.of(connPool, conn, pstmt, CouponQueries::readCoupon);
+	}
+
+	/**
+	 * Retrieves a page of a specific company coupons following the given coupon
+	 * ID. one extra record is read in order to tell if there is a next page.
+	 */
+	@Override
+	public Page<Coupon> getCouponsPage(Company company, long afterId, int limit)
+			throws DatabaseException, ConnectionPoolException {
+		long compId = company.getId() != 0 ? company.getId() : getCompanyId(company.getCompName());
+		Connection conn = connPool.getConnection();
+		List<Coupon> coupons = new ArrayList<>();
+		String sql = "SELECT * FROM coupons INNER JOIN company_coupon ON coupons.id=company_coupon.coupon_id"
+				+ " WHERE COMP_ID=? AND ID>? ORDER BY ID FETCH FIRST ? ROWS ONLY";
+		try {
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+			pstmt.setLong(1, compId);
+			pstmt.setLong(2, afterId);
+			pstmt.setInt(3, limit + 1);
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next()) {
+				coupons.add(CouponQueries.readCoupon(rs));
+			}
+			rs.close();
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to retrive Data!", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+		return Page.of(coupons, limit, afterId, Coupon::getId);
+	}
+
 	/**
 	 * Checks for the combine key of company's name and password, if such a
 	 * combination exist within the companies records it will return true else it
@@ -247,28 +408,37 @@ public class CompanyDBDAO implements CompanyDAO {
 	 */
 	@Override
 	public boolean login(String compName, String password) throws DatabaseException, ConnectionPoolException {
+		return authenticate(compName, password) != 0;
+	}
+
+	/**
+	 * Checks the company's name and password using a single query which is
+	 * covered by the COMPANIES_LOGIN_IDX index (reads only the ID and the password
+	 * hash). returns the company's ID, or 0 if the name and password don't match.
+	 */
+	@Override
+	public long authenticate(String compName, String password) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		String userCredetials = compName + password;
-		String dbCredetials = null;
-		Long id = getCompanyId(compName);
-		String sql = "SELECT * FROM companies WHERE ID=?";
+		long compId = 0;
+		String passwordHash = null;
+		// the optimizer override keeps Derby on the covering index, otherwise it
+		// prefers the unique name index and reads the hash from the table row
+		String sql = "SELECT ID, PASSWORD_HASH FROM companies --DERBY-PROPERTIES index=COMPANIES_LOGIN_IDX\n WHERE COMP_NAME=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
-			pstmt.setLong(1, id);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+			pstmt.setString(1, compName);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
-				dbCredetials = rs.getString("COMP_NAME") + rs.getString("PASSWORD");
+				compId = rs.getLong("ID");
+				passwordHash = rs.getString("PASSWORD_HASH");
 			}
-			pstmt.close();
-			if (!(userCredetials.equals(dbCredetials))) {
-				return false;
-			}
-			return true;
+			rs.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to login! ", e);
 		} finally {
 			connPool.returnConnection(conn);
 		}
+		return PasswordHasher.verify(password, passwordHash) ? compId : 0;
 	}
 
 	/**
@@ -284,18 +454,8 @@ public class CompanyDBDAO implements CompanyDAO {
 	@Override
 	public long getCompanyId(String compName) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long companyId = 0;
-		String sql = "SELECT ID FROM companies WHERE COMP_NAME=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
-			pstmt.setString(1, compName);
-			ResultSet rs = pstmt.executeQuery();
-			while (rs.next()) {
-				companyId = rs.getLong("ID");
-			}
-			pstmt.close();
-			return companyId;
-
+			return getCompanyId(conn, compName);
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to retrive company Id", e);
 		} finally {
@@ -303,6 +463,26 @@ public class CompanyDBDAO implements CompanyDAO {
 		}
 	}
 
+	/**
+	 * returns the company's ID, or looks it up by the company name using the given
+	 * (already granted) connection if the ID is not set.
+	 */
+	private long companyId(Connection conn, Company company) throws SQLException {
+		return company.getId() != 0 ? company.getId() : getCompanyId(conn, company.getCompName());
+	}
+
+	private long getCompanyId(Connection conn, String compName) throws SQLException {
+		long companyId = 0;
+		PreparedStatement pstmt = connPool.prepareStatement(conn, "SELECT ID FROM companies WHERE COMP_NAME=?");
+		pstmt.setString(1, compName);
+		ResultSet rs = pstmt.executeQuery();
+		while (rs.next()) {
+			companyId = rs.getLong("ID");
+		}
+		rs.close();
+		return companyId;
+	}
+
 	/**
 	 * Retrieves a specific company using Company Name. Although the most reliable
 	 * unique key column is the Company's ID column, since Company's name is also a
@@ -317,7 +497,7 @@ public class CompanyDBDAO implements CompanyDAO {
 		Company company = null;
 		String sql = "SELECT * FROM companies WHERE COMP_NAME=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setString(1, compName);
 			ResultSet rs = pstmt.executeQuery();
 			// while we have results from this query, we use Company's advance CTOR to
@@ -326,10 +506,9 @@ public class CompanyDBDAO implements CompanyDAO {
 				company = new Company();
 				company.setId(rs.getLong("ID"));
 				company.setCompName(rs.getString("COMP_NAME"));
-				company.setPassword(rs.getString("PASSWORD"));
 				company.setEmail(rs.getString("EMAIL"));
 			}
-			pstmt.close();
+			rs.close();
 			return company;
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to retrive company data!", e);
@@ -349,14 +528,14 @@ public class CompanyDBDAO implements CompanyDAO {
 		String reqEmail = null;
 		String sql = "SELECT EMAIL FROM companies WHERE EMAIL=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setString(1, email);
 			ResultSet rs = pstmt.executeQuery();
 
 			while (rs.next()) {
 				reqEmail = rs.getString("EMAIL");
 			}
-			pstmt.close();
+			rs.close();
 			return reqEmail;
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to retrive email data!", e);
@@ -375,14 +554,14 @@ public class CompanyDBDAO implements CompanyDAO {
 		Long reqCoupId = null; 
 		String sql = "SELECT COUPON_ID FROM company_coupon WHERE COMP_ID=? AND COUPON_ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, compId);
 			pstmt.setLong(2, coupId);
 			ResultSet rs = pstmt.executeQuery();
 			while(rs.next()) {
 				reqCoupId = rs.getLong("COUPON_ID");
 			}
-			pstmt.close();
+			rs.close();
 			return reqCoupId;
 		}catch (SQLException e) {
 			throw new DatabaseException("Unable to retrive coupon ID data!", e);
@@ -0,0 +1,73 @@
+package com.dbdao;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CouponCacheStats counts the hits, misses, evictions, expirations and
+ * invalidations of the CachingCouponDAO.
+ *
+ * @author SegevSinay
+ */
+public class CouponCacheStats {
+
+	final LongAdder hits = new LongAdder();
+	final LongAdder misses = new LongAdder();
+	final LongAdder evictions = new LongAdder();
+	final LongAdder expirations = new LongAdder();
+	final LongAdder invalidations = new LongAdder();
+
+	/**
+	 * Returns the number of coupons that were taken from the cache.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of coupons that had to be read from the database.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of coupons that were removed to make room in the cache.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the number of coupons that were removed since they were cached
+	 * longer than the time to live.
+	 */
+	public long getExpirations() {
+		return expirations.sum();
+	}
+
+	/**
+	 * Returns the number of coupons that were removed since they were changed.
+	 */
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	/**
+	 * Returns the hits / (hits + misses) ratio, or 0 if no coupon was requested.
+	 */
+	public double getHitRate() {
+		long hit = getHits();
+		long total = hit + getMisses();
+		return total == 0 ? 0 : (double) hit / total;
+	}
+
+	/**
+	 * Returns a custom textual representation of the statistics.
+	 */
+	@Override
+	public String toString() {
+		return "CouponCacheStats [hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+				+ ", expirations=" + getExpirations() + ", invalidations=" + getInvalidations() + ", hitRate="
+				+ String.format("%.2f", getHitRate()) + "]";
+	}
+}
@@ -4,13 +4,23 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import com.beans.Company;
 import com.beans.Coupon;
+import com.beans.CouponFilter;
 import com.beans.CouponType;
+import com.beans.ExpirationReport;
+import com.beans.Page;
 import com.connectionpool.ConnectionPool;
 import com.exceptions.ConnectionPoolException;
 import com.exceptions.CouponSystemException;
@@ -23,7 +33,10 @@ import com.dao.CouponDAO;
  * 
  * Methods within this class based on following pattern: (1) Acquiring
  * connection from connection pool. (2) performing SQL queries and/or updates
- * using prepared statements. (3) Returning connection back to connection pool.
+ * using prepared statements taken from the connection's statement cache
+ * (connPool.prepareStatement), the statements are NOT closed since they are
+ * reused by the next call, only the result sets are closed. (3) Returning
+ * connection back to connection pool.
  * 
  * NOTE : (a) every method that requires a connection must request a connection
  * from the connection pool. once an action gets terminated or completed the
@@ -35,7 +48,10 @@ import com.dao.CouponDAO;
  */
 public class CouponDBDAO implements CouponDAO {
 
-	private ConnectionPool connPool;
+	// the number of rows sent per batch / looked up per IN query
+	private static final int BATCH_SIZE = 100;
+
+	private final ConnectionPool connPool;
 
 	/**
 	 * Default Constructor
@@ -53,7 +69,7 @@ public class CouponDBDAO implements CouponDAO {
 		Connection conn = connPool.getConnection();
 		String sql = "INSERT INTO coupons (TITLE, START_DATE, END_DATE, AMOUNT, TYPE, MESSAGE, PRICE,IMAGE) VALUES (?,?,?,?,?,?,?,?)";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql, Statement.RETURN_GENERATED_KEYS);
 			pstmt.setString(1, coupon.getTitle());
 			pstmt.setDate(2, new java.sql.Date(coupon.getStartDate().getTime()));
 			pstmt.setDate(3, new java.sql.Date(coupon.getEndDate().getTime()));
@@ -63,7 +79,7 @@ public class CouponDBDAO implements CouponDAO {
 			pstmt.setDouble(7, coupon.getPrice());
 			pstmt.setString(8, coupon.getImage());
 			pstmt.executeUpdate();
-			pstmt.close();
+			coupon.setId(GeneratedKeys.id(pstmt));
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to create coupon", e);
 		} finally {
@@ -79,16 +95,14 @@ public class CouponDBDAO implements CouponDAO {
 	@Override
 	public void updateCompanyCoupon(Coupon coupon, Company company) throws CouponSystemException {
 		Connection conn = connPool.getConnection();
-		CompanyDBDAO compDbDao = new CompanyDBDAO();
-		long coupId = getCouponId(coupon.getTitle());
-		long compId = compDbDao.getCompanyId(company.getCompName());
 		String sql = "INSERT INTO company_coupon (COMP_ID, COUPON_ID) VALUES (?,?)";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long coupId = couponId(conn, coupon);
+			long compId = company.getId() != 0 ? company.getId() : getCompanyId(conn, company.getCompName());
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, compId);
 			pstmt.setLong(2, coupId);
 			pstmt.executeUpdate();
-			pstmt.close();
 			System.out.println("Coupon '" + coupon.getTitle()
 					+ "' record has been successfully created within company_coupon table");
 		} catch (SQLException e) {
@@ -98,21 +112,195 @@ public class CouponDBDAO implements CouponDAO {
 		}
 	}
 
+	/**
+	 * Creates the given coupons within the coupons table together with their
+	 * company_coupon records, using batched inserts (BATCH_SIZE rows per batch) in
+	 * a single transaction. the generated coupon IDs are taken from the generated
+	 * keys when the driver returns a key per batched row, otherwise (e.g Derby
+	 * returns only the last key of a batch) they are read back by the unique
+	 * coupon titles within the same transaction.
+	 */
+	@Override
+	public void createCoupons(List<Coupon> coupons, Company company)
+			throws DatabaseException, ConnectionPoolException {
+		if (coupons.isEmpty()) {
+			return;
+		}
+		Connection conn = connPool.getConnection();
+		String sql = "INSERT INTO coupons (TITLE, START_DATE, END_DATE, AMOUNT, TYPE, MESSAGE, PRICE,IMAGE) VALUES (?,?,?,?,?,?,?,?)";
+		try {
+			conn.setAutoCommit(false);
+			try {
+				long compId = company.getId() != 0 ? company.getId() : getCompanyId(conn, company.getCompName());
+				if (compId == 0) {
+					throw new DatabaseException(
+							"Unable to create coupons \ncause: Company '" + company.getCompName() + "' not found!");
+				}
+				PreparedStatement pstmt = connPool.prepareStatement(conn, sql, Statement.RETURN_GENERATED_KEYS);
+				List<Coupon> missingIds = new ArrayList<>();
+				for (int from = 0; from < coupons.size(); from += BATCH_SIZE) {
+					List<Coupon> batch = coupons.subList(from, Math.min(from + BATCH_SIZE, coupons.size()));
+					for (Coupon coupon : batch) {
+						pstmt.setString(1, coupon.getTitle());
+						pstmt.setDate(2, new java.sql.Date(coupon.getStartDate().getTime()));
+						pstmt.setDate(3, new java.sql.Date(coupon.getEndDate().getTime()));
+						pstmt.setInt(4, coupon.getAmount());
+						pstmt.setString(5, coupon.getType().toString());
+						pstmt.setString(6, coupon.getMessage());
+						pstmt.setDouble(7, coupon.getPrice());
+						pstmt.setString(8, coupon.getImage());
+						pstmt.addBatch();
+					}
+					pstmt.executeBatch();
+					List<Long> keys = new ArrayList<>();
+					try (ResultSet rs = pstmt.getGeneratedKeys();) {
+						while (rs != null && rs.next()) {
+							keys.add(rs.getLong(1));
+						}
+					}
+					if (keys.size() == batch.size()) {
+						for (int i = 0; i < batch.size(); i++) {
+							batch.get(i).setId(keys.get(i));
+						}
+					} else {
+						missingIds.addAll(batch);
+					}
+				}
+				if (!missingIds.isEmpty()) {
+					Map<String, Long> ids = getCouponIds(conn, missingIds);
+					for (Coupon coupon : missingIds) {
+						coupon.setId(ids.get(coupon.getTitle()));
+					}
+				}
+				pstmt = connPool.prepareStatement(conn, "INSERT INTO company_coupon (COMP_ID, COUPON_ID) VALUES (?,?)");
+				for (int i = 0; i < coupons.size(); i++) {
+					pstmt.setLong(1, compId);
+					pstmt.setLong(2, coupons.get(i).getId());
+					pstmt.addBatch();
+					if ((i + 1) % BATCH_SIZE == 0 || i == coupons.size() - 1) {
+						pstmt.executeBatch();
+					}
+				}
+				conn.commit();
+			} catch (SQLException e) {
+				conn.rollback();
+				for (Coupon coupon : coupons) {
+					coupon.setId(0);
+				}
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			throw new DatabaseException("Unable to create " + coupons.size() + " coupons", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+	}
+
+	/**
+	 * Returns which of the given coupon titles already exist within the coupons
+	 * table (the titles are looked up BATCH_SIZE titles per query).
+	 */
+	@Override
+	public Set<String> getExistingTitles(Collection<String> titles) throws DatabaseException, ConnectionPoolException {
+		Set<String> existing = new HashSet<>();
+		if (titles.isEmpty()) {
+			return existing;
+		}
+		List<String> lookup = new ArrayList<>(titles);
+		Connection conn = connPool.getConnection();
+		try {
+			PreparedStatement pstmt = connPool.prepareStatement(conn, "SELECT TITLE FROM coupons WHERE TITLE IN ("
+					+ parameters(BATCH_SIZE) + ")");
+			for (int from = 0; from < lookup.size(); from += BATCH_SIZE) {
+				bindChunk(pstmt, lookup, from);
+				ResultSet rs = pstmt.executeQuery();
+				while (rs.next()) {
+					existing.add(rs.getString("TITLE"));
+				}
+				rs.close();
+			}
+			return existing;
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to retrive coupon titles! ", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+	}
+
+	/**
+	 * reads the IDs of the given coupons by their (unique) titles using the given
+	 * connection.
+	 */
+	private Map<String, Long> getCouponIds(Connection conn, List<Coupon> coupons) throws SQLException {
+		List<String> titles = new ArrayList<>();
+		for (Coupon coupon : coupons) {
+			titles.add(coupon.getTitle());
+		}
+		Map<String, Long> ids = new HashMap<>();
+		PreparedStatement pstmt = connPool.prepareStatement(conn, "SELECT ID, TITLE FROM coupons WHERE TITLE IN ("
+				+ parameters(BATCH_SIZE) + ")");
+		for (int from = 0; from < titles.size(); from += BATCH_SIZE) {
+			bindChunk(pstmt, titles, from);
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next()) {
+				ids.put(rs.getString("TITLE"), rs.getLong("ID"));
+			}
+			rs.close();
+		}
+		return ids;
+	}
+
+	private long getCompanyId(Connection conn, String compName) throws SQLException {
+		long compId = 0;
+		PreparedStatement pstmt = connPool.prepareStatement(conn, "SELECT ID FROM companies WHERE COMP_NAME=?");
+		pstmt.setString(1, compName);
+		ResultSet rs = pstmt.executeQuery();
+		while (rs.next()) {
+			compId = rs.getLong("ID");
+		}
+		rs.close();
+		return compId;
+	}
+
+	/**
+	 * returns count comma separated parameter markers.
+	 */
+	private static String parameters(int count) {
+		StringBuilder builder = new StringBuilder("?");
+		for (int i = 1; i < count; i++) {
+			builder.append(",?");
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * binds the BATCH_SIZE values starting at from. a last (partial) chunk is
+	 * padded by repeating its last value, so all chunks share a single cached
+	 * statement.
+	 */
+	private static void bindChunk(PreparedStatement pstmt, List<String> values, int from) throws SQLException {
+		int last = Math.min(from + BATCH_SIZE, values.size()) - 1;
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			pstmt.setString(i + 1, values.get(Math.min(from + i, last)));
+		}
+	}
+
 	/**
 	 * Removes a specific coupon record from coupons table.
 	 */
 	@Override
 	public void removeCoupon(Coupon coupon) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long coupId = getCouponId(coupon.getTitle());
 		String sql = "DELETE FROM coupons WHERE ID=? ";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long coupId = couponId(conn, coupon);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, coupId);
 			pstmt.executeUpdate();
 			System.out.println("Coupon '" + coupon.getTitle() + "' (id #" + coupId
 					+ ") has been successfully deleted from coupons table");
-			pstmt.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to remove '" + coupon.getTitle() + "' coupon record!", e);
 		} finally {
@@ -126,13 +314,12 @@ public class CouponDBDAO implements CouponDAO {
 	@Override
 	public void removeCouponFromCustomerCoupon(Coupon coupon) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long coupId = getCouponId(coupon.getTitle());
 		String sql = "DELETE FROM customer_coupon WHERE COUPON_ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long coupId = couponId(conn, coupon);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, coupId);
 			pstmt.executeUpdate();
-			pstmt.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to remove coupon '" + coupon.getTitle() + "' from customer_coupon",
 					e);
@@ -147,13 +334,12 @@ public class CouponDBDAO implements CouponDAO {
 	@Override
 	public void removeCouponFromCompanyCoupon(Coupon coupon) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long coupId = getCouponId(coupon.getTitle());
 		String sql = "DELETE FROM company_coupon WHERE COUPON_ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long coupId = couponId(conn, coupon);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, coupId);
 			pstmt.executeUpdate();
-			pstmt.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to remove '" + coupon.getTitle() + "' coupon from customer_coupon",
 					e);
@@ -169,17 +355,10 @@ public class CouponDBDAO implements CouponDAO {
 	@Override
 	public void updateCoupon(Coupon coupon) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long coupId = 0;
-		String sql = "SELECT * FROM Coupons WHERE TITLE=?"; // I'm able to used it only since title is a unique value!
+		String sql = "UPDATE Coupons SET TITLE=?,START_DATE =?, END_DATE=?, AMOUNT=?, TYPE=?, MESSAGE=?, PRICE=? ,IMAGE=? WHERE ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
-			pstmt.setString(1, coupon.getTitle());
-			ResultSet rs = pstmt.executeQuery();
-			while (rs.next()) {
-				coupId = rs.getLong("ID");
-			}
-			sql = "UPDATE Coupons SET TITLE=?,START_DATE =?, END_DATE=?, AMOUNT=?, TYPE=?, MESSAGE=?, PRICE=? ,IMAGE=? WHERE ID=?";
-			pstmt = conn.prepareStatement(sql);
+			long coupId = couponId(conn, coupon); // when the ID is not set the title is used (it is unique)
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setString(1, coupon.getTitle());
 			pstmt.setDate(2, new java.sql.Date(coupon.getStartDate().getTime()));
 			pstmt.setDate(3, new java.sql.Date(coupon.getEndDate().getTime()));
@@ -188,9 +367,8 @@ public class CouponDBDAO implements CouponDAO {
 			pstmt.setString(6, coupon.getMessage());
 			pstmt.setDouble(7, coupon.getPrice());
 			pstmt.setString(8, coupon.getImage());
-			pstmt.setDouble(9, coupId);
+			pstmt.setLong(9, coupId);
 			pstmt.executeUpdate();
-			pstmt.close();
 		} catch (SQLException e) {
 			throw new DatabaseException(
 					"unable to update" + coupon.getTitle() + " coupon record! \ncause:" + e.getMessage());
@@ -210,7 +388,7 @@ public class CouponDBDAO implements CouponDAO {
 		Coupon coupon = null;
 		String sql = "SELECT * FROM coupons WHERE ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, id);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
@@ -225,7 +403,7 @@ public class CouponDBDAO implements CouponDAO {
 				coupon.setPrice(rs.getDouble("PRICE"));
 				coupon.setImage(rs.getString("IMAGE"));
 			}
-			pstmt.close();
+			rs.close();
 			return coupon;
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive coupon record! ", e);
@@ -248,7 +426,7 @@ public class CouponDBDAO implements CouponDAO {
 		Coupon coupon = null;
 		String sql = "SELECT * FROM coupons WHERE TITLE=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setString(1, title);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
@@ -263,7 +441,7 @@ public class CouponDBDAO implements CouponDAO {
 				coupon.setPrice(rs.getDouble("PRICE"));
 				coupon.setImage(rs.getString("IMAGE"));
 			}
-			pstmt.close();
+			rs.close();
 			return coupon;
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive coupon record! ", e);
@@ -285,17 +463,8 @@ public class CouponDBDAO implements CouponDAO {
 	@Override
 	public long getCouponId(String title) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long coupId = 0;
-		String sql = "SELECT ID FROM coupons WHERE TITLE=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
-			pstmt.setString(1, title);
-			ResultSet rs = pstmt.executeQuery();
-			while (rs.next()) {
-				coupId = rs.getLong("ID");
-			}
-			pstmt.close();
-			return coupId;
+			return getCouponId(conn, title);
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive coupon '" + title + " id ", e);
 		} finally {
@@ -303,6 +472,26 @@ public class CouponDBDAO implements CouponDAO {
 		}
 	}
 
+	/**
+	 * returns the coupon's ID, or looks it up by the coupon title using the given
+	 * (already granted) connection if the ID is not set.
+	 */
+	private long couponId(Connection conn, Coupon coupon) throws SQLException {
+		return coupon.getId() != 0 ? coupon.getId() : getCouponId(conn, coupon.getTitle());
+	}
+
+	private long getCouponId(Connection conn, String title) throws SQLException {
+		long coupId = 0;
+		PreparedStatement pstmt = connPool.prepareStatement(conn, "SELECT ID FROM coupons WHERE TITLE=?");
+		pstmt.setString(1, title);
+		ResultSet rs = pstmt.executeQuery();
+		while (rs.next()) {
+			coupId = rs.getLong("ID");
+		}
+		rs.close();
+		return coupId;
+	}
+
 	/**
 	 * Retrieves all coupon record for coupons table. (Imports the detail of the
 	 * full coupons Table from DB to Java and then using these details it creates
@@ -315,7 +504,7 @@ public class CouponDBDAO implements CouponDAO {
 		List<Coupon> allCoupons = new ArrayList<>();
 		String sql = "SELECT * FROM coupons";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
 				coupon = new Coupon();
@@ -330,7 +519,7 @@ public class CouponDBDAO implements CouponDAO {
 				coupon.setImage(rs.getString("IMAGE"));
 				allCoupons.add(coupon);
 			}
-			pstmt.close();
+			rs.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive data! \ncause:", e);
 		} finally {
@@ -347,25 +536,16 @@ public class CouponDBDAO implements CouponDAO {
 	@Override
 	public Collection<Coupon> getCouponByType(CouponType coupontype) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		Coupon coupon = null;
 		List<Coupon> couponsByType = new ArrayList<>();
 		String sql = "SELECT * FROM coupons WHERE TYPE = ?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+			pstmt.setString(1, coupontype.toString());
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
-				coupon = new Coupon();
-				coupon.setId(rs.getLong("ID"));
-				coupon.setTitle(rs.getString("TITLE"));
-				coupon.setStartDate(rs.getDate("START_DATE"));
-				coupon.setEndDate(rs.getDate("END_DATE"));
-				coupon.setAmount(rs.getInt("AMOUNT"));
-				coupon.setType(CouponType.valueOf(rs.getString("TYPE")));
-				coupon.setPrice(rs.getDouble("PRICE"));
-				coupon.setImage(rs.getString("IMAGE"));
-				couponsByType.add(coupon);
+				couponsByType.add(CouponQueries.readCoupon(rs));
 			}
-			pstmt.close();
+			rs.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive data! ", e);
 		} finally {
@@ -374,6 +554,96 @@ public class CouponDBDAO implements CouponDAO {
 		return couponsByType;
 	}
 
+	/**
+	 * Counts the coupon records of each coupon type using a single grouped query
+	 * (which is answered from the type index). types without coupons are counted
+	 * as 0.
+	 */
+	@Override
+	public Map<CouponType, Integer> getCouponCountByType() throws DatabaseException, ConnectionPoolException {
+		Connection conn = connPool.getConnection();
+		Map<CouponType, Integer> counts = new EnumMap<>(CouponType.class);
+		for (CouponType type : CouponType.values()) {
+			counts.put(type, 0);
+		}
+		String sql = "SELECT TYPE, COUNT(*) AS COUPONS FROM coupons GROUP BY TYPE";
+		try {
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next()) {
+				counts.put(CouponType.valueOf(rs.getString("TYPE")), rs.getInt("COUPONS"));
+			}
+			rs.close();
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to retrive data! ", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+		return counts;
+	}
+
+	/**
+	 * Streams all coupon records. the statement is not taken from the statement
+	 * cache since it is held (with the connection) until the stream is closed.
+	 */
+	@Override
+	public Stream<Coupon> streamAllCoupons(int fetchSize) throws DatabaseException, ConnectionPoolException {
+		Connection conn = connPool.getConnection();
+		PreparedStatement pstmt = ResultSetStream.prepare(connPool, conn, "SELECT * FROM coupons", fetchSize);
+		return ResultSetStream.of(connPool, conn, pstmt, CouponQueries::readCoupon);
+	}
+
+	/**
+	 * Retrieves all coupon records which match the given filter. the filter
+	 * conditions are added to the query's WHERE clause.
+	 */
+	@Override
+	public Collection<Coupon> getCoupons(CouponFilter filter) throws DatabaseException, ConnectionPoolException {
+		Connection conn = connPool.getConnection();
+		List<Coupon> coupons = new ArrayList<>();
+		String sql = CouponQueries.where("SELECT * FROM coupons", filter, false);
+		try {
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+			CouponQueries.bind(pstmt, 1, filter);
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next()) {
+				coupons.add(CouponQueries.readCoupon(rs));
+			}
+			rs.close();
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to retrive data! ", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+		return coupons;
+	}
+
+	/**
+	 * Retrieves a page of coupon records following the given ID. one extra record
+	 * is read in order to tell if there is a next page.
+	 */
+	@Override
+	public Page<Coupon> getCouponsPage(long afterId, int limit) throws DatabaseException, ConnectionPoolException {
+		Connection conn = connPool.getConnection();
+		List<Coupon> coupons = new ArrayList<>();
+		String sql = "SELECT * FROM coupons WHERE ID>? ORDER BY ID FETCH FIRST ? ROWS ONLY";
+		try {
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+			pstmt.setLong(1, afterId);
+			pstmt.setInt(2, limit + 1);
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next()) {
+				coupons.add(CouponQueries.readCoupon(rs));
+			}
+			rs.close();
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to retrive data! ", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+		return Page.of(coupons, limit, afterId, Coupon::getId);
+	}
+
 	/**
 	 * Checks the coupons table (in the database) and collect to a coupon list all
 	 * the expired coupons based on their end date.
@@ -386,7 +656,7 @@ public class CouponDBDAO implements CouponDAO {
 
 		String sql = "SELECT * FROM coupons WHERE END_DATE<CURRENT_DATE";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
 				coupon = new Coupon();
@@ -400,6 +670,7 @@ public class CouponDBDAO implements CouponDAO {
 				coupon.setImage(rs.getString("IMAGE"));
 				expiredCoupons.add(coupon);
 			}
+			rs.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive data! ", e);
 		} finally {
@@ -407,4 +678,64 @@ public class CouponDBDAO implements CouponDAO {
 		}
 		return expiredCoupons;
 	}
+
+	/**
+	 * Removes all expired coupons (based on their end date) together with their
+	 * customer_coupon and company_coupon records using set based deletes on a
+	 * single connection. each chunk finds the ID of the chunkSize-th expired coupon
+	 * (ordered by ID) and removes all expired coupons up to that ID in one
+	 * transaction: customer_coupon records, company_coupon records and then the
+	 * coupons themselves. returns the removal counts and run time.
+	 */
+	@Override
+	public ExpirationReport removeExpiredCoupons(int chunkSize) throws DatabaseException, ConnectionPoolException {
+		long start = System.currentTimeMillis();
+		ExpirationReport report = new ExpirationReport();
+		Connection conn = connPool.getConnection();
+		String chunkSql = "SELECT ID FROM coupons WHERE END_DATE<CURRENT_DATE ORDER BY ID";
+		String customerSql = "DELETE FROM customer_coupon WHERE COUPON_ID IN (SELECT ID FROM coupons WHERE END_DATE<CURRENT_DATE AND ID<=?)";
+		String companySql = "DELETE FROM company_coupon WHERE COUPON_ID IN (SELECT ID FROM coupons WHERE END_DATE<CURRENT_DATE AND ID<=?)";
+		String couponSql = "DELETE FROM coupons WHERE END_DATE<CURRENT_DATE AND ID<=?";
+		try {
+			conn.setAutoCommit(false);
+			try {
+				while (true) {
+					PreparedStatement pstmt = connPool.prepareStatement(conn, chunkSql);
+					pstmt.setMaxRows(chunkSize);
+					ResultSet rs = pstmt.executeQuery();
+					long lastId = 0;
+					while (rs.next()) {
+						lastId = rs.getLong("ID");
+					}
+					rs.close();
+					if (lastId == 0) {
+						conn.commit();
+						break; // no more expired coupons
+					}
+					pstmt = connPool.prepareStatement(conn, customerSql);
+					pstmt.setLong(1, lastId);
+					report.setRemovedCustomerCoupons(report.getRemovedCustomerCoupons() + pstmt.executeUpdate());
+					pstmt = connPool.prepareStatement(conn, companySql);
+					pstmt.setLong(1, lastId);
+					report.setRemovedCompanyCoupons(report.getRemovedCompanyCoupons() + pstmt.executeUpdate());
+					pstmt = connPool.prepareStatement(conn, couponSql);
+					pstmt.setLong(1, lastId);
+					report.setRemovedCoupons(report.getRemovedCoupons() + pstmt.executeUpdate());
+					conn.commit();
+					report.setChunks(report.getChunks() + 1);
+				}
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to remove expired coupons! " + report, e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+		report.setElapsedMillis(System.currentTimeMillis() - start);
+		return report;
+	}
 }
@@ -0,0 +1,77 @@
+package com.dbdao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.beans.Coupon;
+import com.beans.CouponFilter;
+import com.beans.CouponType;
+
+/**
+ * CouponQueries holds the SQL parts which are shared by the DBDAO's coupon
+ * queries: the coupon filter conditions (and their parameters) and the coupon
+ * record extraction.
+ *
+ * @author SegevSinay
+ */
+final class CouponQueries {
+
+	private CouponQueries() {
+	}
+
+	/**
+	 * appends the filter conditions to the given query. the query should already
+	 * contain a WHERE clause if hasWhere is true.
+	 */
+	static String where(String sql, CouponFilter filter, boolean hasWhere) {
+		StringBuilder builder = new StringBuilder(sql);
+		String separator = hasWhere ? " AND " : " WHERE ";
+		if (filter.getType() != null) {
+			builder.append(separator).append("TYPE=?");
+			separator = " AND ";
+		}
+		if (filter.getMaxPrice() != null) {
+			builder.append(separator).append("PRICE<=?");
+			separator = " AND ";
+		}
+		if (filter.getMaxEndDate() != null) {
+			builder.append(separator).append("END_DATE<=?");
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * binds the filter parameters starting at the given index. returns the next
+	 * parameter index.
+	 */
+	static int bind(PreparedStatement pstmt, int index, CouponFilter filter) throws SQLException {
+		if (filter.getType() != null) {
+			pstmt.setString(index++, filter.getType().toString());
+		}
+		if (filter.getMaxPrice() != null) {
+			pstmt.setDouble(index++, filter.getMaxPrice());
+		}
+		if (filter.getMaxEndDate() != null) {
+			pstmt.setDate(index++, new java.sql.Date(filter.getMaxEndDate().getTime()));
+		}
+		return index;
+	}
+
+	/**
+	 * creates a coupon from the current record of the result set.
+	 */
+	static Coupon readCoupon(ResultSet rs) throws SQLException {
+		Coupon coupon = new Coupon();
+		coupon.setId(rs.getLong("ID"));
+		coupon.setTitle(rs.getString("TITLE"));
+		coupon.setStartDate(rs.getDate("START_DATE"));
+		coupon.setEndDate(rs.getDate("END_DATE"));
+		coupon.setAmount(rs.getInt("AMOUNT"));
+		coupon.setType(CouponType.valueOf(rs.getString("TYPE")));
+		coupon.setMessage(rs.getString("MESSAGE"));
+		coupon.setPrice(rs.getDouble("PRICE"));
+		coupon.setImage(rs.getString("IMAGE"));
+		return coupon;
+	}
+}
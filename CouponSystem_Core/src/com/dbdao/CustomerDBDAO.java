@@ -4,18 +4,24 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 import com.beans.Coupon;
+import com.beans.CouponFilter;
+import com.beans.Page;
 import com.beans.CouponType;
 import com.beans.Customer;
+import com.beans.PurchaseResult;
 import com.connectionpool.ConnectionPool;
 import com.dao.CustomerDAO;
 import com.exceptions.ConnectionPoolException;
 import com.exceptions.CouponSystemException;
 import com.exceptions.DatabaseException;
+import com.utilityclasses.PasswordHasher;
 
 /**
  * CustomerDBDAO class implements the CustomerDAO interface.Its main purpose is
@@ -23,7 +29,10 @@ import com.exceptions.DatabaseException;
  * 
  * Methods within this class based on following pattern: (1) Acquiring
  * connection from connection pool. (2) performing SQL queries and/or updates
- * using prepared statements. (3) Returning connection back to connection pool.
+ * using prepared statements taken from the connection's statement cache
+ * (connPool.prepareStatement), the statements are NOT closed since they are
+ * reused by the next call, only the result sets are closed. (3) Returning
+ * connection back to connection pool.
  * 
  * NOTE : (a) every method that requires a connection must request a connection
  * from the connection pool. once an action gets terminated or completed the
@@ -35,7 +44,7 @@ import com.exceptions.DatabaseException;
  */
 public class CustomerDBDAO implements CustomerDAO {
 
-	private ConnectionPool connPool;
+	private final ConnectionPool connPool;
 
 	/**
 	 * Default Constructor
@@ -52,13 +61,13 @@ public class CustomerDBDAO implements CustomerDAO {
 	@Override
 	public void createCustomer(Customer customer) throws CouponSystemException {
 		Connection conn = connPool.getConnection();
-		String sql = "INSERT INTO customers (CUST_NAME, PASSWORD) VALUES(?,?)";
+		String sql = "INSERT INTO customers (CUST_NAME, PASSWORD_HASH) VALUES(?,?)";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql, Statement.RETURN_GENERATED_KEYS);
 			pstmt.setString(1, customer.getCustName());
-			pstmt.setString(2, customer.getPassword());
+			pstmt.setString(2, PasswordHasher.hash(customer.getPassword()));
 			pstmt.executeUpdate();
-			pstmt.close();
+			customer.setId(GeneratedKeys.id(pstmt));
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to create customer '" + customer.getCustName() + "'", e);
 		} finally {
@@ -72,13 +81,12 @@ public class CustomerDBDAO implements CustomerDAO {
 	@Override
 	public void removeCustomer(Customer customer) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long custId = getCustomerId(customer.getCustName());
 		String sql = "DELETE FROM customers WHERE ID =?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long custId = customerId(conn, customer);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, custId);
 			pstmt.executeUpdate();
-			pstmt.close();
 		} catch (SQLException e) {
 			new DatabaseException("unable to remove customer '" + customer.getCustName() + "'", e);
 		} finally {
@@ -99,10 +107,10 @@ public class CustomerDBDAO implements CustomerDAO {
 	@Override
 	public void removeCustomerFromCustomerCoupon(Customer customer) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long custId = getCustomerId(customer.getCustName());
 		String sql = "DELETE FROM customer_coupon WHERE CUST_ID =?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long custId = customerId(conn, customer);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, custId);
 			pstmt.executeUpdate();
 		} catch (SQLException e) {
@@ -115,20 +123,19 @@ public class CustomerDBDAO implements CustomerDAO {
 	/**
 	 * Updates a specific customer record within the Customer table. (Exports the
 	 * detail for the record we want to update within the database for the requested
-	 * customer.)
+	 * customer.) the password hash is kept when the customer's password is null.
 	 */
 	@Override
 	public void updateCustomer(Customer customer) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long custId = getCustomerId(customer.getCustName());
-		String sql = "UPDATE customers SET CUST_NAME=?, PASSWORD=? WHERE ID=?";
+		String sql = "UPDATE customers SET CUST_NAME=?, PASSWORD_HASH=COALESCE(?, PASSWORD_HASH) WHERE ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long custId = customerId(conn, customer);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setString(1, customer.getCustName());
-			pstmt.setString(2, customer.getPassword());
+			pstmt.setString(2, customer.getPassword() == null ? null : PasswordHasher.hash(customer.getPassword()));
 			pstmt.setLong(3, custId);// Since update can also alter Name, I've used ID as the "anchor"!
 			pstmt.executeUpdate();
-			pstmt.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to update customer details \ncause:" + e.getMessage());
 		} finally {
@@ -148,15 +155,14 @@ public class CustomerDBDAO implements CustomerDAO {
 		String sql = "SELECT * FROM customers WHERE ID=?";
 		try {
 			customer = new Customer();
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, id);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
 				customer.setId(id);
 				customer.setCustName(rs.getString("CUST_NAME"));
-				customer.setPassword(rs.getString("PASSWORD"));
 			}
-			pstmt.close();
+			rs.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive date!", e);
 		} finally {
@@ -177,16 +183,15 @@ public class CustomerDBDAO implements CustomerDAO {
 		List<Customer> allcustomers = new ArrayList<>();
 		String sql = "SELECT * FROM customers";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
 				customer = new Customer();
 				customer.setId(rs.getLong("ID"));
 				customer.setCustName(rs.getString("CUST_NAME"));
-				customer.setPassword(rs.getString("PASSWORD"));
 				allcustomers.add(customer);
 			}
-			pstmt.close();
+			rs.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive data! ", e);
 		} finally {
@@ -207,10 +212,10 @@ public class CustomerDBDAO implements CustomerDAO {
 		Connection conn = connPool.getConnection();
 		Coupon coupon = null;
 		List<Coupon> customerCoupons = new ArrayList<>();
-		long custId = getCustomerId(customer.getCustName());
 		String sql = "SELECT * FROM coupons INNER JOIN customer_coupon ON coupons.id=customer_coupon.coupon_id WHERE CUST_ID=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long custId = customerId(conn, customer);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, custId);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
@@ -226,7 +231,83 @@ public class CustomerDBDAO implements CustomerDAO {
 				coupon.setImage(rs.getString("IMAGE"));
 				customerCoupons.add(coupon);
 			}
-			pstmt.close();
+			rs.close();
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to retrive data! ", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+		return customerCoupons;
+	}
+
+	/**
+	 * Retrieves a page of customer records following the given ID. one extra
+	 * record is read in order to tell if there is a next page.
+	 */
+	@Override
+	public Page<Customer> getCustomersPage(long afterId, int limit) throws DatabaseException, ConnectionPoolException {
+		Connection conn = connPool.getConnection();
+		Customer customer = null;
+		List<Customer> customers = new ArrayList<>();
+		String sql = "SELECT * FROM customers WHERE ID>? ORDER BY ID FETCH FIRST ? ROWS ONLY";
+		try {
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+			pstmt.setLong(1, afterId);
+			pstmt.setInt(2, limit + 1);
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next()) {
+				customer = new Customer();
+				customer.setId(rs.getLong("ID"));
+				customer.setCustName(rs.getString("CUST_NAME"));
+				customers.add(customer);
+			}
+			rs.close();
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to retrive data! ", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+		return Page.of(customers, limit, afterId, Customer::getId);
+	}
+
+	/**
+	 * Streams a specific customer's purchased coupons. the statement is not taken
+	 * from the statement cache since it is held (with the connection) until the
+	 * stream is closed.
+	 */
+	@Override
+	public Stream<Coupon> streamCoupons(Customer customer, int fetchSize)
+			throws ConnectionPoolException, DatabaseException {
+		long custId = customer.getId() != 0 ? customer.getId() : getCustomerId(customer.getCustName());
+		Connection conn = connPool.getConnection();
+		PreparedStatement pstmt = ResultSetStream.prepare(connPool, conn,
+				"SELECT * FROM coupons INNER JOIN customer_coupon ON coupons.id=customer_coupon.coupon_id WHERE CUST_ID=?",
+				fetchSize, custId);
+		return ResultSetStream.of(connPool, conn, pstmt, CouponQueries::readCoupon);
+	}
+
+	/**
+	 * Retrieves a specific customer's purchased coupons which match the given
+	 * filter. the filter conditions are added to the joined query's WHERE clause.
+	 */
+	@Override
+	public Collection<Coupon> getCoupons(Customer customer, CouponFilter filter)
+			throws ConnectionPoolException, DatabaseException {
+		long custId = customer.getId() != 0 ? customer.getId() : getCustomerId(customer.getCustName());
+		Connection conn = connPool.getConnection();
+		List<Coupon> customerCoupons = new ArrayList<>();
+		String sql = CouponQueries.where(
+				"SELECT * FROM coupons INNER JOIN customer_coupon ON coupons.id=customer_coupon.coupon_id WHERE CUST_ID=?",
+				filter, true);
+		try {
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+			pstmt.setLong(1, custId);
+			CouponQueries.bind(pstmt, 2, filter);
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next()) {
+				customerCoupons.add(CouponQueries.readCoupon(rs));
+			}
+			rs.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive data! ", e);
 		} finally {
@@ -242,29 +323,37 @@ public class CustomerDBDAO implements CustomerDAO {
 	 */
 	@Override
 	public boolean login(String custName, String password) throws DatabaseException, ConnectionPoolException {
+		return authenticate(custName, password) != 0;
+	}
+
+	/**
+	 * Checks the customer's name and password using a single query which is
+	 * covered by the CUSTOMERS_LOGIN_IDX index (reads only the ID and the password
+	 * hash). returns the customer's ID, or 0 if the name and password don't match.
+	 */
+	@Override
+	public long authenticate(String custName, String password) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		String userCredetials = custName + password;
-		String dbCredetials = null;
-		String sql = "SELECT * FROM customers WHERE CUST_NAME=? AND PASSWORD=? ";
+		long custId = 0;
+		String passwordHash = null;
+		// the optimizer override keeps Derby on the covering index, otherwise it
+		// prefers the unique name index and reads the hash from the table row
+		String sql = "SELECT ID, PASSWORD_HASH FROM customers --DERBY-PROPERTIES index=CUSTOMERS_LOGIN_IDX\n WHERE CUST_NAME=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setString(1, custName);
-			pstmt.setString(2, password);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
-				dbCredetials = rs.getString("CUST_NAME") + rs.getString("PASSWORD");
+				custId = rs.getLong("ID");
+				passwordHash = rs.getString("PASSWORD_HASH");
 			}
-			pstmt.close();
+			rs.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to login! ", e);
 		} finally {
 			connPool.returnConnection(conn);
 		}
-		if (!(userCredetials.equals(dbCredetials))) {
-			return false;
-		}
-		System.out.println("login for customer '" + custName + "' is confirmed");
-		return true;
+		return PasswordHasher.verify(password, passwordHash) ? custId : 0;
 	}
 
 	/**
@@ -275,14 +364,13 @@ public class CustomerDBDAO implements CustomerDAO {
 	@Override
 	public void purchaseCoupon(Customer customer, Coupon coupon) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long custId = getCustomerId(customer.getCustName());
 		String sql = "INSERT INTO customer_coupon (CUST_ID,COUPON_ID) VALUES (?,?)";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			long custId = customerId(conn, customer);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setLong(1, custId);
 			pstmt.setLong(2, coupon.getId());
 			pstmt.executeUpdate();
-			pstmt.close();
 			System.out.println(
 					customer.getCustName() + " purchase of coupon " + coupon.getTitle() + " was updated successfuly");
 		} catch (SQLException e) {
@@ -294,6 +382,79 @@ public class CustomerDBDAO implements CustomerDAO {
 		}
 	}
 
+	/**
+	 * Purchases a coupon for a customer (by its ID) in a single transaction on a
+	 * single connection: (1) the coupon amount is decremented by the coupon ID
+	 * only if it is still in stock and not expired, so two customers can't both
+	 * take the last coupon. (2) only if a single coupon was decremented, the
+	 * customer_coupon record is created (already purchased = primary key
+	 * violation). if either step fails the transaction is rolled back and the
+	 * reason is returned. the coupon's ID is taken from the coupon, or looked up
+	 * once by its title if it is not set.
+	 */
+	@Override
+	public PurchaseResult purchaseCoupon(long custId, Coupon coupon) throws DatabaseException, ConnectionPoolException {
+		Connection conn = connPool.getConnection();
+		String updateSql = "UPDATE coupons SET AMOUNT = AMOUNT - 1 WHERE ID=? AND AMOUNT > 0 AND END_DATE >= CURRENT_DATE";
+		String insertSql = "INSERT INTO customer_coupon (CUST_ID, COUPON_ID) VALUES (?,?)";
+		try {
+			long coupId = couponId(conn, coupon);
+			if (coupId == 0) {
+				return PurchaseResult.NOT_FOUND;
+			}
+			coupon.setId(coupId);
+			conn.setAutoCommit(false);
+			try {
+				PreparedStatement pstmt = connPool.prepareStatement(conn, updateSql);
+				pstmt.setLong(1, coupId);
+				if (pstmt.executeUpdate() != 1) {
+					PurchaseResult result = purchaseFailureReason(conn, coupId);
+					conn.rollback();
+					return result;
+				}
+				pstmt = connPool.prepareStatement(conn, insertSql);
+				pstmt.setLong(1, custId);
+				pstmt.setLong(2, coupId);
+				pstmt.executeUpdate();
+				conn.commit();
+				return PurchaseResult.PURCHASED;
+			} catch (SQLException e) {
+				conn.rollback();
+				if ("23505".equals(e.getSQLState())) { // duplicate key - already purchased by this customer
+					return PurchaseResult.ALREADY_PURCHASED;
+				}
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			throw new DatabaseException("unable to purchase coupon '" + coupon.getTitle() + "' !", e);
+		} finally {
+			connPool.returnConnection(conn);
+		}
+	}
+
+	/**
+	 * Checks why the coupon amount could not be decremented (only called once the
+	 * purchase has failed, within the purchase transaction).
+	 */
+	private PurchaseResult purchaseFailureReason(Connection conn, long coupId) throws SQLException {
+		PurchaseResult result = PurchaseResult.NOT_FOUND;
+		String sql = "SELECT AMOUNT, END_DATE FROM coupons WHERE ID=?";
+		PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
+		pstmt.setLong(1, coupId);
+		ResultSet rs = pstmt.executeQuery();
+		if (rs.next()) {
+			if (rs.getInt("AMOUNT") <= 0) {
+				result = PurchaseResult.OUT_OF_STOCK;
+			} else {
+				result = PurchaseResult.EXPIRED;
+			}
+		}
+		rs.close();
+		return result;
+	}
+
 	/**
 	 * Retrieves a specific customer ID using customer Name. Although the most
 	 * reliable unique key column is the customer's ID column, since customer name
@@ -307,21 +468,51 @@ public class CustomerDBDAO implements CustomerDAO {
 	@Override
 	public long getCustomerId(String custName) throws DatabaseException, ConnectionPoolException {
 		Connection conn = connPool.getConnection();
-		long custId = 0;
-		String sql = "SELECT ID FROM customers WHERE CUST_NAME=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
-			pstmt.setString(1, custName);
-			ResultSet rs = pstmt.executeQuery();
-			while (rs.next()) {
-				custId = rs.getLong("ID");
-			}
-			pstmt.close();
+			return getCustomerId(conn, custName);
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to retrive customer Id", e);
 		} finally {
 			connPool.returnConnection(conn);
 		}
+	}
+
+	/**
+	 * returns the customer's ID, or looks it up by the customer name using the
+	 * given (already granted) connection if the ID is not set.
+	 */
+	private long customerId(Connection conn, Customer customer) throws SQLException {
+		return customer.getId() != 0 ? customer.getId() : getCustomerId(conn, customer.getCustName());
+	}
+
+	/**
+	 * returns the coupon's ID, or looks it up by the coupon title using the given
+	 * (already granted) connection if the ID is not set.
+	 */
+	private long couponId(Connection conn, Coupon coupon) throws SQLException {
+		if (coupon.getId() != 0) {
+			return coupon.getId();
+		}
+		long coupId = 0;
+		PreparedStatement pstmt = connPool.prepareStatement(conn, "SELECT ID FROM coupons WHERE TITLE=?");
+		pstmt.setString(1, coupon.getTitle());
+		ResultSet rs = pstmt.executeQuery();
+		while (rs.next()) {
+			coupId = rs.getLong("ID");
+		}
+		rs.close();
+		return coupId;
+	}
+
+	private long getCustomerId(Connection conn, String custName) throws SQLException {
+		long custId = 0;
+		PreparedStatement pstmt = connPool.prepareStatement(conn, "SELECT ID FROM customers WHERE CUST_NAME=?");
+		pstmt.setString(1, custName);
+		ResultSet rs = pstmt.executeQuery();
+		while (rs.next()) {
+			custId = rs.getLong("ID");
+		}
+		rs.close();
 		return custId;
 	}
 
@@ -339,15 +530,15 @@ public class CustomerDBDAO implements CustomerDAO {
 		Customer customer = null;
 		String sql = "SELECT * FROM customers WHERE CUST_NAME=?";
 		try {
-			PreparedStatement pstmt = conn.prepareStatement(sql);
+			PreparedStatement pstmt = connPool.prepareStatement(conn, sql);
 			pstmt.setString(1, name);
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
 				customer = new Customer();
+				customer.setId(rs.getLong("ID"));
 				customer.setCustName(rs.getString("CUST_NAME"));
-				customer.setPassword(rs.getString("PASSWORD"));
 			}
-			pstmt.close();
+			rs.close();
 		} catch (SQLException e) {
 			throw new DatabaseException("unable to retrive date!", e);
 		} finally {
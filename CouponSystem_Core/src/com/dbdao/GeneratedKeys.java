@@ -0,0 +1,29 @@
+package com.dbdao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * GeneratedKeys reads the ID which the database generated (IDENTITY column) for
+ * a single row insert executed with Statement.RETURN_GENERATED_KEYS, so the
+ * DBDAO's set the ID into the created bean instead of looking it up again by
+ * its name or title.
+ *
+ * @author SegevSinay
+ */
+final class GeneratedKeys {
+
+	private GeneratedKeys() {
+	}
+
+	/**
+	 * returns the generated ID of the last executed insert, or 0 if the driver
+	 * didn't return one.
+	 */
+	static long id(PreparedStatement pstmt) throws SQLException {
+		try (ResultSet rs = pstmt.getGeneratedKeys();) {
+			return rs != null && rs.next() ? rs.getLong(1) : 0;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.dbdao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.connectionpool.ConnectionPool;
+import com.exceptions.ConnectionPoolException;
+import com.exceptions.DatabaseException;
+import com.exceptions.UncheckedCouponSystemException;
+
+/**
+ * ResultSetStream turns an open forward-only result set into a Stream, so a
+ * full table scan can be consumed record by record without building a
+ * collection. the records are read (fetchSize records at a time) only as the
+ * stream is consumed.
+ *
+ * The stream owns the pooled connection, the statement and the result set until
+ * it is closed, once closed they are closed and the connection is returned to
+ * the pool. therefore the stream MUST be closed, e.g using try-with-resources.
+ * A database error while the stream is consumed is thrown as an
+ * UncheckedCouponSystemException wrapping a DatabaseException.
+ *
+ * @author SegevSinay
+ */
+final class ResultSetStream {
+
+	/**
+	 * creates a record from the current row of a result set.
+	 */
+	interface RowMapper<T> {
+		T map(ResultSet rs) throws SQLException;
+	}
+
+	private ResultSetStream() {
+	}
+
+	/**
+	 * prepares a forward-only, read-only statement on the given connection
+	 * (bypassing the statement cache since the statement is held by the stream)
+	 * and binds the given ID parameters. the connection is returned to the pool if
+	 * the statement can't be prepared.
+	 */
+	static PreparedStatement prepare(ConnectionPool connPool, Connection conn, String sql, int fetchSize,
+			long... ids) throws DatabaseException, ConnectionPoolException {
+		PreparedStatement pstmt = null;
+		try {
+			pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			pstmt.setFetchSize(fetchSize);
+			for (int i = 0; i < ids.length; i++) {
+				pstmt.setLong(i + 1, ids[i]);
+			}
+			return pstmt;
+		} catch (SQLException e) {
+			if (pstmt != null) {
+				release(connPool, conn, pstmt, null);
+			} else {
+				connPool.returnConnection(conn);
+			}
+			throw new DatabaseException("unable to retrive data! ", e);
+		}
+	}
+
+	/**
+	 * executes the given statement and returns a stream of its records. the
+	 * statement and connection are closed / returned if the query fails.
+	 */
+	static <T> Stream<T> of(ConnectionPool connPool, Connection conn, PreparedStatement pstmt, RowMapper<T> mapper)
+			throws DatabaseException, ConnectionPoolException {
+		ResultSet rs;
+		try {
+			rs = pstmt.executeQuery();
+		} catch (SQLException e) {
+			release(connPool, conn, pstmt, null);
+			throw new DatabaseException("unable to retrive data! ", e);
+		}
+		Spliterator<T> records = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				try {
+					if (!rs.next()) {
+						return false;
+					}
+					action.accept(mapper.map(rs));
+					return true;
+				} catch (SQLException e) {
+					throw new UncheckedCouponSystemException(new DatabaseException("unable to retrive data! ", e));
+				}
+			}
+		};
+		return StreamSupport.stream(records, false).onClose(new Runnable() {
+
+			private boolean closed;
+
+			@Override
+			public void run() {
+				if (!closed) {
+					closed = true;
+					release(connPool, conn, pstmt, rs);
+				}
+			}
+		});
+	}
+
+	/**
+	 * closes the result set and statement and returns the connection to the pool.
+	 */
+	private static void release(ConnectionPool connPool, Connection conn, PreparedStatement pstmt, ResultSet rs) {
+		try {
+			if (rs != null) {
+				rs.close();
+			}
+			pstmt.close();
+		} catch (SQLException e) {
+			// the connection is returned anyway
+		} finally {
+			try {
+				connPool.returnConnection(conn);
+			} catch (ConnectionPoolException e) {
+				throw new UncheckedCouponSystemException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package com.exceptions;
+
+public class UncheckedCouponSystemException extends RuntimeException {
+
+	/**
+	 * UncheckedCouponSystemException wraps a CouponSystemException which occurs
+	 * where a checked exception can't be thrown (e.g while a DAO stream is being
+	 * consumed). the original exception is available using getCause().
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public UncheckedCouponSystemException(CouponSystemException cause) {
+		super(cause.getMessage(), cause);
+	}
+
+	@Override
+	public synchronized CouponSystemException getCause() {
+		return (CouponSystemException) super.getCause();
+	}
+
+}
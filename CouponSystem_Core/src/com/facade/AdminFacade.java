@@ -1,21 +1,21 @@
 package com.facade;
 
 import java.util.Collection;
-import java.util.Iterator;
 
 import com.beans.Company;
-import com.beans.Coupon;
+import com.beans.CompanyRemovalReport;
 import com.beans.Customer;
+import com.beans.Page;
+import com.connectionpool.UnitOfWork;
 import com.dao.CompanyDAO;
 import com.dao.CouponDAO;
 import com.dao.CustomerDAO;
-import com.dbdao.CompanyDBDAO;
-import com.dbdao.CouponDBDAO;
-import com.dbdao.CustomerDBDAO;
 import com.exceptions.CouponSystemException;
 import com.exceptions.DataNotFoundException;
 import com.exceptions.InvalidInputException;
 import com.main.ClientType;
+import com.main.DAORegistry;
+import com.main.SessionManager;
 
 /**
  * Sets the business logic and actions for the Admin client.
@@ -27,14 +27,45 @@ public class AdminFacade implements CouponClientFacade {
 	private CompanyDAO compDao;
 	private CustomerDAO custDao;
 	private CouponDAO coupDao;
+	private SessionManager sessions;
 
 	/**
-	 * AdminFacade Constructor. sets the Dao's to DBDAO's.
+	 * AdminFacade Constructor. sets the Dao's to the shared DBDAO's (see
+	 * DAORegistry).
 	 */
 	public AdminFacade() throws CouponSystemException {
-		this.custDao = new CustomerDBDAO();
-		this.coupDao = new CouponDBDAO();
-		this.compDao = new CompanyDBDAO();
+		this(DAORegistry.getInstance().getCompanyDao(), DAORegistry.getInstance().getCustomerDao(),
+				DAORegistry.getInstance().getCouponDao());
+	}
+
+	/**
+	 * AdminFacade Constructor. sets the given Dao's (e.g the Dao's loaded by the
+	 * CouponSystem).
+	 */
+	public AdminFacade(CompanyDAO compDao, CustomerDAO custDao, CouponDAO coupDao) {
+		this.custDao = custDao;
+		this.coupDao = coupDao;
+		this.compDao = compDao;
+	}
+
+	/**
+	 * AdminFacade Constructor. sets the given Dao's and the client sessions of the
+	 * CouponSystem, which are closed once their client is removed or updated.
+	 */
+	public AdminFacade(CompanyDAO compDao, CustomerDAO custDao, CouponDAO coupDao, SessionManager sessions) {
+		this(compDao, custDao, coupDao);
+		this.sessions = sessions;
+	}
+
+	/**
+	 * closes the open sessions of the given client (if the facade was given the
+	 * client sessions), so the client has to login again with its current
+	 * details.
+	 */
+	private void closeSessions(ClientType clientType, String name) {
+		if (sessions != null) {
+			sessions.closeAll(clientType, name);
+		}
 	}
 
 	// ---------------------------
@@ -80,33 +111,23 @@ public class AdminFacade implements CouponClientFacade {
 	 * Removes a company and all its coupons from the database. Removing a company
 	 * with this method impacts the following database tables: (a) Company_Coupon
 	 * table: if any company's coupon record has been created. (b) Customer_Coupon
-	 * (d) Companies table. It is imperative we will remove all company's related
-	 * data from these tables in order to be able to remove the company data. once
-	 * we clear all related data it is safe to remove the company from the companies
-	 * table.
+	 * (c) Coupons table (d) Companies table. the related records are removed by
+	 * the DAO using one set based delete per table (keyed on the company ID) in a
+	 * single transaction, so a company is removed at once regardless of the number
+	 * of its coupons. returns the removed records counts.
 	 */
-	public void removeCompany(Company company) throws CouponSystemException {
+	public CompanyRemovalReport removeCompany(Company company) throws CouponSystemException {
 		long compId = compDao.getCompanyId(company.getCompName());
 		if (compId == 0) {
 			throw new DataNotFoundException(
 					"Unable to remove '" + company.getCompName() + "' company \ncause: company not found!");
 		}
-		Collection<Coupon> couponsToDelete = compDao.getCoupons(company);
-		Iterator<Coupon> it = couponsToDelete.iterator();
-		while (it.hasNext()) {
-			for (Coupon coupon : couponsToDelete) {
-				System.out.println(coupon);
-				coupDao.removeCouponFromCustomerCoupon(coupon);
-				System.out.println(coupon + " has been successfully removed from customer_coupon table");
-				coupDao.removeCoupon(coupon);
-				System.out.println(coupon + " has been successfully removed from coupons table");
-			}
-		}
-		compDao.removeCompanyFromCompanyCoupon(company);// seems more efficient than removing each coupon...
-		System.out.println(company.getCompName() + " company has been successfully Removed from company_coupon table ");
-		compDao.removeCompany(company);
-		System.out.println(company.getCompName() + " company has been successfully removed from companied table");
-		System.out.println(company.getCompName() + " company has been successfully Removed from database");
+		company.setId(compId); // the DAO's use the ID instead of looking it up again
+		CompanyRemovalReport report = compDao.removeCompanyWithCoupons(company);
+		coupDao.refreshCoupons(); // the company's coupons were removed without the coupon DAO
+		closeSessions(ClientType.COMPANY, company.getCompName());
+		System.out.println(company.getCompName() + " company has been successfully Removed from database: " + report);
+		return report;
 	}
 
 	/**
@@ -114,7 +135,9 @@ public class AdminFacade implements CouponClientFacade {
 	 * RESTRICTIONS: 1. Can't update a company that has not been created first. 2.
 	 * Password: must have at least eight characters,consists of only letters and
 	 * digits, must contain at least two digits. 3. Email: must be a legal Email
-	 * format.if a restriction is violated it throws InvalidInputException.
+	 * format.if a restriction is violated it throws InvalidInputException. a null
+	 * password keeps the company's current password (the companies read from the
+	 * database have no password, only its hash is stored).
 	 */
 	public void updateCompany(Company company) throws CouponSystemException {
 		long compId = compDao.getCompanyId(company.getCompName());
@@ -124,7 +147,8 @@ public class AdminFacade implements CouponClientFacade {
 			throw new DataNotFoundException("Unable to update '" + company.getCompName()
 					+ "' company \ncause: company not found within the Database!");
 		}
-		if (!passwordValidation(compPassword)) {
+		company.setId(compId);
+		if (compPassword != null && !passwordValidation(compPassword)) { // null keeps the password
 			throw new InvalidInputException("Invalid password, please make sure that:"
 					+ "\n1. password length is 8-10 characters." + "\n2. password contains letters and digits only."
 					+ "\n3. password contains at least two digits.");
@@ -141,6 +165,7 @@ public class AdminFacade implements CouponClientFacade {
 		// username@example.com");
 		System.out.println("'" + company.getCompName() + "' has been successfully updated ");
 		compDao.updateCompany(company);
+		closeSessions(ClientType.COMPANY, company.getCompName());
 	}
 
 	/**
@@ -168,6 +193,17 @@ public class AdminFacade implements CouponClientFacade {
 		return compDao.getAllCompanies();
 	}
 
+	/**
+	 * Retrieves a page of up to limit companies following the given company ID
+	 * (use 0 for the first page and the page's next cursor for the next one).
+	 */
+	public Page<Company> getAllCompanies(long afterId, int limit) throws CouponSystemException {
+		if (limit < 1) {
+			throw new InvalidInputException("Invalid page size ! limit must be positive!");
+		}
+		return compDao.getCompaniesPage(afterId, limit);
+	}
+
 	// --------------------------
 	// Customers related methods
 	// --------------------------
@@ -201,6 +237,9 @@ public class AdminFacade implements CouponClientFacade {
 	 * has been purchased by this customer. (b)customers table. first,
 	 * customer_coupon record will be removed then the customer will removed from
 	 * the customers table. if company is not found it throws InvalidInputException.
+	 * 
+	 * NOTE: all the removals are performed in a single transaction (see
+	 * UnitOfWork).
 	 */
 	public void removeCustomer(Customer customer) throws CouponSystemException {
 		long custId = custDao.getCustomerId(customer.getCustName());
@@ -208,8 +247,13 @@ public class AdminFacade implements CouponClientFacade {
 			throw new DataNotFoundException(
 					"Unable to remove Customer: '" + customer.getCustName() + "'\nCause: Customer not found!");
 		}
-		custDao.removeCustomerFromCustomerCoupon(customer);// seems more efficient than removing each coupon...
-		custDao.removeCustomer(customer);
+		customer.setId(custId); // the DAO's use the ID instead of looking it up again
+		UnitOfWork.execute(() -> {
+			custDao.removeCustomerFromCustomerCoupon(customer);// seems more efficient than removing each coupon...
+			custDao.removeCustomer(customer);
+			return null;
+		});
+		closeSessions(ClientType.CUSTOMER, customer.getCustName());
 		System.out.println("Customer has been successfully removed from companied table");
 	}
 
@@ -219,7 +263,8 @@ public class AdminFacade implements CouponClientFacade {
 	 * must have at least eight characters,consists of only letters and digits, must
 	 * contain at least two digits. if customer is not found it throws
 	 * DatabaseException. if a restriction is violated it throws
-	 * InvalidInputException.
+	 * InvalidInputException. a null password keeps the customer's current
+	 * password.
 	 */
 	public void updateCustomer(Customer customer) throws CouponSystemException {
 		Customer custName = custDao.getCustomerByName(customer.getCustName());
@@ -228,12 +273,14 @@ public class AdminFacade implements CouponClientFacade {
 			throw new DataNotFoundException(
 					"Unable to create '" + customer.getCustName() + "' customer \ncause: Customer not found!");
 		}
-		if (!passwordValidation(custPassword)) {
+		customer.setId(custName.getId());
+		if (custPassword != null && !passwordValidation(custPassword)) { // null keeps the password
 			throw new InvalidInputException("Invalid password, please make sure that:"
 					+ "\n1. password length is 8-10 characters." + "\n2. password contains letters and digits only."
 					+ "\n3. password contains at least two digits.");
 		}
 		custDao.updateCustomer(customer);
+		closeSessions(ClientType.CUSTOMER, customer.getCustName());
 	}
 
 	/**
@@ -258,6 +305,17 @@ public class AdminFacade implements CouponClientFacade {
 		return allCust;
 	}
 
+	/**
+	 * Retrieves a page of up to limit customers following the given customer ID
+	 * (use 0 for the first page and the page's next cursor for the next one).
+	 */
+	public Page<Customer> getAllCustomers(long afterId, int limit) throws CouponSystemException {
+		if (limit < 1) {
+			throw new InvalidInputException("Invalid page size ! limit must be positive!");
+		}
+		return custDao.getCustomersPage(afterId, limit);
+	}
+
 	/**
 	 * NOT IN USE - login process performed in the CouponSystem class
 	 */
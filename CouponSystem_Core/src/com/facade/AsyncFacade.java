@@ -0,0 +1,58 @@
+package com.facade;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.exceptions.CouponSystemException;
+
+/**
+ * AsyncFacade runs the operations of a logged in client's facade
+ * (CustomerFacade, CompanyFacade or AdminFacade) on the BoundedFacadeExecutor and
+ * returns CompletableFuture's, so the caller's thread doesn't wait for the
+ * database.
+ *
+ * Usage:
+ *
+ * <pre>
+ * AsyncFacade&lt;CustomerFacade&gt; customer = cs.async(customerF);
+ * customer.call(f -> f.purchaseCoupon(coupon)).thenAccept(result -> ...);
+ * </pre>
+ *
+ * @author SegevSinay
+ */
+public class AsyncFacade<F extends CouponClientFacade> {
+
+	/**
+	 * a facade operation which returns a result (a void operation returns null).
+	 */
+	public interface Call<F, T> {
+		T call(F facade) throws CouponSystemException;
+	}
+
+	private final F facade;
+	private final BoundedFacadeExecutor executor;
+
+	/**
+	 * AsyncFacade Constructor. runs the operations of the given facade on the
+	 * given executor.
+	 */
+	public AsyncFacade(F facade, BoundedFacadeExecutor executor) {
+		this.facade = facade;
+		this.executor = executor;
+	}
+
+	/**
+	 * runs the given operation of the facade asynchronously. the returned future
+	 * completes with the operation's result, or exceptionally with the
+	 * CouponSystemException it has thrown.
+	 */
+	public <T> CompletableFuture<T> call(Call<F, T> call) {
+		return executor.submit(() -> call.call(facade));
+	}
+
+	/**
+	 * allows to get the facade whose operations are run.
+	 */
+	public F getFacade() {
+		return facade;
+	}
+}
@@ -0,0 +1,216 @@
+package com.facade;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.exceptions.CouponSystemException;
+
+/**
+ * BoundedFacadeExecutor runs facade operations asynchronously (see
+ * AsyncFacade) on a bounded number of threads: at most maxConcurrency
+ * operations (e.g the connection pool size) run at once, so a burst of
+ * requests doesn't end up in connection acquire timeouts.
+ *
+ * The operations run on a fixed pool of maxConcurrency platform threads. the
+ * system is built for Java 8, so this is the default path. only when the
+ * running JVM supports virtual threads (Java 21 and later, found by
+ * reflection) each operation gets its own virtual thread instead.
+ *
+ * The submitted operations wait in order in a pending queue and an operation
+ * is handed to a thread only once it holds a permit of the limiter, so no
+ * thread (platform or virtual) is started or blocked for an operation which
+ * can't run yet, and submit() never blocks the caller. a completed operation
+ * releases its permit and starts the next pending one.
+ *
+ * @author SegevSinay
+ */
+public class BoundedFacadeExecutor {
+
+	/**
+	 * a facade operation which runs on the executor.
+	 */
+	public interface Task<T> {
+		T run() throws CouponSystemException;
+	}
+
+	private final ExecutorService executor;
+	private final boolean virtualThreads;
+	private final int maxConcurrency;
+	private final Semaphore limiter;
+	private final Queue<Job<?>> pending = new ConcurrentLinkedQueue<>();
+
+	// the operations submitted and not completed yet, awaited by shutdown()
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final CountDownLatch terminated = new CountDownLatch(1);
+	private volatile boolean closed;
+
+	/**
+	 * BoundedFacadeExecutor Constructor. runs up to maxConcurrency operations at
+	 * once (e.g the connection pool's maximum size).
+	 */
+	public BoundedFacadeExecutor(int maxConcurrency) {
+		this.maxConcurrency = maxConcurrency;
+		this.limiter = new Semaphore(maxConcurrency);
+		ExecutorService virtual = newVirtualThreadExecutor();
+		this.virtualThreads = virtual != null;
+		this.executor = virtual != null ? virtual : newPlatformThreadExecutor(maxConcurrency);
+	}
+
+	/**
+	 * returns an executor which starts a virtual thread per task, or null if the
+	 * JVM doesn't support virtual threads.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			return null; // before Java 21 (or a preview feature which is not enabled)
+		}
+	}
+
+	private static ExecutorService newPlatformThreadExecutor(int threads) {
+		AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "facade-request-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * runs the given operation asynchronously. the returned future completes with
+	 * the operation's result, or exceptionally with the exception it has thrown.
+	 */
+	public <T> CompletableFuture<T> submit(Task<T> task) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		if (closed) {
+			future.completeExceptionally(new CouponSystemException("The coupon system is shutting down"));
+			return future;
+		}
+		outstanding.incrementAndGet();
+		pending.offer(new Job<>(task, future));
+		dispatch();
+		return future;
+	}
+
+	/**
+	 * hands the pending operations to threads, in order, as long as permits are
+	 * available. called on submit and whenever an operation completes, so an
+	 * operation can't be left pending while a permit is free.
+	 */
+	private void dispatch() {
+		while (!pending.isEmpty() && limiter.tryAcquire()) {
+			Job<?> job = pending.poll();
+			if (job == null) { // taken by another thread meanwhile
+				limiter.release();
+				continue;
+			}
+			try {
+				executor.execute(job);
+			} catch (RejectedExecutionException e) {
+				job.reject(new CouponSystemException("The coupon system is shutting down", e));
+			}
+		}
+	}
+
+	/**
+	 * releases the permit of a completed operation and starts the next pending
+	 * one.
+	 */
+	private void completed() {
+		limiter.release();
+		if (outstanding.decrementAndGet() == 0 && closed) {
+			terminated.countDown();
+		}
+		dispatch();
+	}
+
+	/**
+	 * stops accepting operations and waits up to the given timeout for the
+	 * submitted operations (running and pending) to complete.
+	 */
+	public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		closed = true;
+		if (outstanding.get() == 0) {
+			terminated.countDown();
+		}
+		terminated.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		executor.shutdown();
+		executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns true if the operations run on virtual threads.
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Returns the maximum number of operations which run at once.
+	 */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * Returns the number of operations which are running.
+	 */
+	public int getActive() {
+		return maxConcurrency - limiter.availablePermits();
+	}
+
+	/**
+	 * Returns the (estimated) number of operations which wait for a permit.
+	 */
+	public int getWaiting() {
+		return pending.size();
+	}
+
+	@Override
+	public String toString() {
+		return "BoundedFacadeExecutor [virtualThreads=" + virtualThreads + ", maxConcurrency=" + maxConcurrency
+				+ ", active=" + getActive() + ", waiting=" + getWaiting() + "]";
+	}
+
+	/**
+	 * a submitted operation and its future. it is run by a thread only once it
+	 * holds a permit, which it releases on completion.
+	 */
+	private class Job<T> implements Runnable {
+
+		private final Task<T> task;
+		private final CompletableFuture<T> future;
+
+		Job(Task<T> task, CompletableFuture<T> future) {
+			this.task = task;
+			this.future = future;
+		}
+
+		@Override
+		public void run() {
+			try {
+				future.complete(task.run());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			} finally {
+				completed();
+			}
+		}
+
+		void reject(CouponSystemException e) {
+			future.completeExceptionally(e);
+			completed();
+		}
+	}
+}
@@ -1,20 +1,27 @@
 package com.facade;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.beans.Company;
 import com.beans.Coupon;
+import com.beans.CouponFilter;
+import com.beans.CouponImportResult;
 import com.beans.CouponType;
+import com.beans.Page;
+import com.connectionpool.UnitOfWork;
 import com.dao.CompanyDAO;
 import com.dao.CouponDAO;
-import com.dbdao.CompanyDBDAO;
-import com.dbdao.CouponDBDAO;
 import com.exceptions.CouponSystemException;
 import com.exceptions.DataNotFoundException;
 import com.main.ClientType;
+import com.main.DAORegistry;
 
 import com.exceptions.InvalidInputException;
 
@@ -38,17 +45,28 @@ public class CompanyFacade implements CouponClientFacade {
 	}
 
 	/**
-	 * CompanyFacade Constructor. sets Dao's to DBDAO. sets the loginCompany to the
-	 * credentials that were used in the CS login.
+	 * CompanyFacade Constructor. sets Dao's to the shared DBDAO's (see
+	 * DAORegistry). sets the loginCompany to the credentials that were used in the
+	 * CS login.
 	 */
 	public CompanyFacade(Company company) throws CouponSystemException {
-		this.coupDao = new CouponDBDAO();
-		this.compDao = new CompanyDBDAO();
+		this(company, DAORegistry.getInstance().getCompanyDao(), DAORegistry.getInstance().getCouponDao());
+	}
+
+	/**
+	 * CompanyFacade Constructor. sets the given Dao's (e.g the Dao's loaded by the
+	 * CouponSystem). sets the loginCompany to the credentials that were used in the
+	 * CS login.
+	 */
+	public CompanyFacade(Company company, CompanyDAO compDao, CouponDAO coupDao) {
+		this.coupDao = coupDao;
+		this.compDao = compDao;
 		this.loginCompany = company;
 	}
 
 	/**
-	 * Creates a specific coupon record in the Coupons table.
+	 * Creates a specific coupon record in the Coupons table together with its
+	 * Company_Coupon record, in a single transaction (see UnitOfWork).
 	 */
 	public void createCoupon(Coupon coupon) throws CouponSystemException {
 		Coupon coup = coupDao.getCouponByTitle(coupon.getTitle());
@@ -57,16 +75,71 @@ public class CompanyFacade implements CouponClientFacade {
 					"Unable to create Coupon '" + coupon.getTitle() + "\ncause: Coupon already exist in Databse!");
 		}
 		if (couponCheck(coupon)) {
-			coupDao.createCoupon(coupon);
-			System.out.println(coupon.getTitle() + " Coupon record has been successfully created within Coupons table");
-			coupDao.updateCompanyCoupon(coupon, loginCompany);
-			System.out.println(
-					coupon.getTitle() + " Coupon record has been successfully created within Company_Coupons table");
+			UnitOfWork.execute(() -> {
+				coupDao.createCoupon(coupon);
+				System.out.println(
+						coupon.getTitle() + " Coupon record has been successfully created within Coupons table");
+				coupDao.updateCompanyCoupon(coupon, loginCompany);
+				System.out.println(
+						coupon.getTitle() + " Coupon record has been successfully created within Company_Coupons table");
+				return null;
+			});
 		}
 	}
 
 	/**
-	 * Removes a specific coupon record coupon from the Coupons table.
+	 * Creates many coupons at once (e.g a partner's coupons import). all coupons
+	 * are validated in memory first (the same checks as createCoupon, the column
+	 * sizes and title uniqueness within the collection), then the titles which
+	 * already exist are looked up in a few queries, and the valid coupons are
+	 * created with their Company_Coupon records using batched inserts in a single
+	 * transaction. the created coupons get their generated IDs.
+	 * 
+	 * NOTE: a rejected coupon doesn't stop the import, its reason is reported in
+	 * the returned result. a database failure rolls back the whole import.
+	 */
+	public CouponImportResult createCoupons(Collection<Coupon> coupons) throws CouponSystemException {
+		CouponImportResult result = new CouponImportResult();
+		Map<String, Integer> indexes = new HashMap<>();
+		int index = 0;
+		for (Coupon coupon : coupons) {
+			try {
+				importCheck(coupon);
+				if (indexes.putIfAbsent(coupon.getTitle(), index) != null) {
+					throw new InvalidInputException("Coupon '" + coupon.getTitle() + "' appears more than once!");
+				}
+			} catch (InvalidInputException e) {
+				result.addRejected(index, e.getMessage());
+			}
+			index++;
+		}
+		Set<String> existing = coupDao.getExistingTitles(indexes.keySet());
+		List<Coupon> valid = new ArrayList<>();
+		index = 0;
+		for (Coupon coupon : coupons) {
+			if (!result.getRejected().containsKey(index)) {
+				if (existing.contains(coupon.getTitle())) {
+					result.addRejected(index, "Unable to create Coupon '" + coupon.getTitle()
+							+ "\ncause: Coupon already exist in Databse!");
+				} else {
+					valid.add(coupon);
+				}
+			}
+			index++;
+		}
+		coupDao.createCoupons(valid, getLoginCompany());
+		for (Coupon coupon : valid) {
+			result.addCreated(coupon);
+		}
+		System.out.println(valid.size() + " Coupon records have been successfully created, "
+				+ result.getRejected().size() + " rejected");
+		return result;
+	}
+
+	/**
+	 * Removes a specific coupon record coupon from the Coupons table together with
+	 * its Customer_Coupon and Company_Coupon records, in a single transaction (see
+	 * UnitOfWork).
 	 */
 	public void removeCoupon(Coupon coupon) throws CouponSystemException {
 		Coupon coup = coupDao.getCouponByTitle(coupon.getTitle());
@@ -74,13 +147,17 @@ public class CompanyFacade implements CouponClientFacade {
 			throw new DataNotFoundException(
 					"Unable to remove coupon '" + coupon.getTitle() + "' \ncause: Coupon not found!");
 		}
-		coupDao.removeCouponFromCustomerCoupon(coupon);
-		System.out
-				.println("Coupon '" + coupon.getTitle() + "' has been successfully removed from CustomerCoupon table");
-		coupDao.removeCouponFromCompanyCoupon(coupon);
-		System.out.println("Coupon '" + coupon.getTitle() + "' has been successfully removed from CompanyCoupon table");
-		coupDao.removeCoupon(coupon);
-		System.out.println("Coupon '" + coupon.getTitle() + "' has been successfully removed from Coupons table");
+		UnitOfWork.execute(() -> {
+			coupDao.removeCouponFromCustomerCoupon(coup); // coup holds the coupon ID
+			System.out.println(
+					"Coupon '" + coupon.getTitle() + "' has been successfully removed from CustomerCoupon table");
+			coupDao.removeCouponFromCompanyCoupon(coup);
+			System.out.println(
+					"Coupon '" + coupon.getTitle() + "' has been successfully removed from CompanyCoupon table");
+			coupDao.removeCoupon(coup);
+			System.out.println("Coupon '" + coupon.getTitle() + "' has been successfully removed from Coupons table");
+			return null;
+		});
 		System.out.println("Coupon '" + coupon.getTitle() + "' has been successfully removed from Database");
 	}
 
@@ -105,6 +182,7 @@ public class CompanyFacade implements CouponClientFacade {
 			Coupon updatedCoupon = new Coupon(originalCoup.getTitle(), originalCoup.getStartDate(), coupon.getEndDate(),
 					originalCoup.getAmount(), originalCoup.getType(), originalCoup.getMessage(), coupon.getPrice(),
 					originalCoup.getImage());
+			updatedCoupon.setId(originalCoup.getId());
 
 			coupDao.updateCoupon(updatedCoupon);
 			System.out
@@ -168,22 +246,35 @@ public class CompanyFacade implements CouponClientFacade {
 		return compDao.getCoupons(this.getLoginCompany());
 	}
 
+	/**
+	 * Retrieves a page of up to limit coupons of the specific login company
+	 * following the given coupon ID (use 0 for the first page and the page's next
+	 * cursor for the next one).
+	 */
+	public Page<Coupon> getAllCoupons(long afterId, int limit) throws CouponSystemException {
+		if (limit < 1) {
+			throw new InvalidInputException("Invalid page size ! limit must be positive!");
+		}
+		return compDao.getCouponsPage(this.getLoginCompany(), afterId, limit);
+	}
+
+	/**
+	 * Retrieves all coupons which match the given filter (coupon type, max price
+	 * and/or max end date) for the specific login company. the filter is applied
+	 * by the database.
+	 */
+	public Collection<Coupon> getAllCoupons(CouponFilter filter) throws CouponSystemException {
+		return compDao.getCoupons(this.getLoginCompany(), filter);
+	}
+
 	/**
 	 * Retrieves a collection of all coupons by the requested type for the specific
 	 * login company.
 	 */
 	public Collection<Coupon> getAllCouponsByType(CouponType coupontype) throws CouponSystemException {
-		Coupon coupon = null;
-		Collection<Coupon> companyCoupons = getAllCoupons();
-		Iterator<Coupon> it = companyCoupons.iterator();
-		while (it.hasNext()) {
-			coupon = it.next();
-			if (coupon.getType() != coupontype) {
-				it.remove();
-			}
-			if (companyCoupons.isEmpty()) {
-				throw new DataNotFoundException("No data found for the requested coupon type");
-			}
+		Collection<Coupon> companyCoupons = getAllCoupons(CouponFilter.byType(coupontype));
+		if (companyCoupons.isEmpty()) {
+			throw new DataNotFoundException("No data found for the requested coupon type");
 		}
 		return companyCoupons;
 	}
@@ -193,17 +284,9 @@ public class CompanyFacade implements CouponClientFacade {
 	 * price) for the specific login company.
 	 */
 	public Collection<Coupon> getAllCouponsMaxPrice(double price) throws CouponSystemException {
-		Coupon coupon = null;
-		Collection<Coupon> companyCoupons = this.getAllCoupons();
-		Iterator<Coupon> it = companyCoupons.iterator();
-		while (it.hasNext()) {
-			coupon = it.next();
-			if (coupon.getPrice() > price) {
-				it.remove();
-			}
-			if (companyCoupons.isEmpty()) {
-				throw new DataNotFoundException("No data was found for the requested price range");
-			}
+		Collection<Coupon> companyCoupons = getAllCoupons(CouponFilter.byMaxPrice(price));
+		if (companyCoupons.isEmpty()) {
+			throw new DataNotFoundException("No data was found for the requested price range");
 		}
 		return companyCoupons;
 	}
@@ -213,20 +296,10 @@ public class CompanyFacade implements CouponClientFacade {
 	 * specific login company.
 	 */
 	public Collection<Coupon> getAllCouponsMaxEndDate(Date maxEndDate) throws CouponSystemException {
-		Coupon coupon = null;
-		Collection<Coupon> companyCoupons = this.getAllCoupons();
-		Iterator<Coupon> it = companyCoupons.iterator();
-		if (maxEndDate != null) {
-			while (it.hasNext()) {
-				coupon = it.next();
-				if (coupon.getEndDate().after(maxEndDate)) {
-					it.remove();
-				}
-			}
-			return companyCoupons;
-		} else {
+		if (maxEndDate == null) {
 			throw new InvalidInputException("Date cannot be set to null");
 		}
+		return getAllCoupons(CouponFilter.byMaxEndDate(maxEndDate));
 	}
 
 	/**
@@ -266,6 +339,24 @@ public class CompanyFacade implements CouponClientFacade {
 		}
 	}
 
+	/**
+	 * Validates an imported coupon: its fields are set, fit their columns and pass
+	 * couponCheck().
+	 */
+	private void importCheck(Coupon coupon) throws InvalidInputException {
+		if (coupon == null || coupon.getTitle() == null || coupon.getMessage() == null
+				|| coupon.getStartDate() == null || coupon.getEndDate() == null || coupon.getType() == null) {
+			throw new InvalidInputException("Coupon title, message, dates and type must be set!");
+		}
+		if (coupon.getTitle().length() > 30) {
+			throw new InvalidInputException("Title is too long ! up to 30 characters are allowed!");
+		}
+		if (coupon.getMessage().length() > 200) {
+			throw new InvalidInputException("Message is too long ! up to 200 characters are allowed!");
+		}
+		couponCheck(coupon);
+	}
+
 	/**
 	 * Validates that the company requesting the coupons is the coupon owner.
 	 * returns true if the company own the coupon or false if not.
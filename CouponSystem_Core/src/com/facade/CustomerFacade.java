@@ -1,21 +1,22 @@
 package com.facade;
 
-import java.util.Calendar;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Map;
 
 import com.beans.Coupon;
+import com.beans.CouponFilter;
 import com.beans.CouponType;
 import com.beans.Customer;
+import com.beans.Page;
+import com.beans.PurchaseResult;
 import com.dao.CouponDAO;
 import com.dao.CustomerDAO;
-import com.dbdao.CouponDBDAO;
-import com.dbdao.CustomerDBDAO;
 import com.exceptions.CouponPurchaseException;
 import com.exceptions.CouponSystemException;
 import com.exceptions.DataNotFoundException;
 import com.exceptions.InvalidInputException;
 import com.main.ClientType;
+import com.main.DAORegistry;
 
 /**
  * Sets the business logic and actions for the Customer client.
@@ -35,12 +36,22 @@ public class CustomerFacade implements CouponClientFacade {
 	}
 
 	/**
-	 * CustomerFacade Constructor. sets Dao's to DBDAO. sets the loginCustomer to
-	 * the credentials that were used in the CS login.
+	 * CustomerFacade Constructor. sets Dao's to the shared DBDAO's (see
+	 * DAORegistry). sets the loginCustomer to the credentials that were used in
+	 * the CS login.
 	 */
 	public CustomerFacade(Customer loginCustomer) throws CouponSystemException {
-		this.custDao = new CustomerDBDAO();
-		this.coupDao = new CouponDBDAO();
+		this(loginCustomer, DAORegistry.getInstance().getCustomerDao(), DAORegistry.getInstance().getCouponDao());
+	}
+
+	/**
+	 * CustomerFacade Constructor. sets the given Dao's (e.g the Dao's loaded by the
+	 * CouponSystem). sets the loginCustomer to the credentials that were used in
+	 * the CS login.
+	 */
+	public CustomerFacade(Customer loginCustomer, CustomerDAO custDao, CouponDAO coupDao) {
+		this.custDao = custDao;
+		this.coupDao = coupDao;
 		this.logincustomer = loginCustomer;
 	}
 
@@ -48,48 +59,46 @@ public class CustomerFacade implements CouponClientFacade {
 	 * Purchasing process is restricted by the following: (1) if coupon exist within
 	 * this customer purchased coupons history it cannot be purchased again. (2) if
 	 * the coupon is out of stock, it cannot be purchased. (3) if the coupon is due
-	 * its expire date it cannot be purchased. all three must be validated versus
-	 * Database current data.
+	 * its expire date it cannot be purchased. all three are validated versus
+	 * Database current data by tryPurchaseCoupon(), if the purchase fails it
+	 * throws a CouponPurchaseException stating the cause.
 	 */
 	public void purchaseCoupon(Coupon coupon) throws CouponSystemException {
-		Coupon originalCoup = coupDao.getCouponByTitle(coupon.getTitle());
-
-		// if coupon is expired (since it got deleted upon daily thread run) or not
-		// exists
-		if (originalCoup == null) {
+		PurchaseResult result = tryPurchaseCoupon(coupon);
+		switch (result) {
+		case PURCHASED:
+			System.out.println("Coupon '" + coupon.getTitle() + "' has been successfully purchased");
+			return;
+		case NOT_FOUND:
+			// if coupon is expired (since it got deleted upon daily thread run) or not
+			// exists
 			throw new CouponPurchaseException("Unable to complete purchasing process \ncause: coupon not found");
-		}
-		// if coupon was already purchased by this customer
-		Collection<Coupon> custCoup = getAllPurchasedCoupons();
-		Iterator<Coupon> it = custCoup.iterator();
-		while (it.hasNext()) {
-			Coupon coup = it.next();
-			if (coup.getId() == originalCoup.getId()) {
-				throw new CouponPurchaseException(
-						"Unable to complete purchasing process \ncause: coupon already purchased by this customer");
-			}
-		}
-		// if coupon is out of stock
-		if (originalCoup.getAmount() <= 0) {
+		case ALREADY_PURCHASED:
+			throw new CouponPurchaseException(
+					"Unable to complete purchasing process \ncause: coupon already purchased by this customer");
+		case OUT_OF_STOCK:
 			throw new CouponPurchaseException("Unable to complete purchasing process \ncause: coupon is out of stock");
+		case EXPIRED:
+			throw new CouponPurchaseException("Unable to complete purchasing process \ncause: coupon has expired");
 		}
-		// --------------------------
-		// purchasing update process
-		// --------------------------
-		Coupon couponCurrentData = new Coupon(originalCoup.getId(), originalCoup.getTitle(),
-				originalCoup.getStartDate(), originalCoup.getEndDate(), (originalCoup.getAmount() - 1),
-				originalCoup.getType(), originalCoup.getMessage(), originalCoup.getPrice(),
-				originalCoup.getImage());
-
-		// add record to customer_coupon table
-		custDao.purchaseCoupon(this.getLoginCustomer(), couponCurrentData);
-		// update new amount in coupons table
-
-		if (couponCheck(couponCurrentData)) {
-			coupDao.updateCoupon(couponCurrentData);
-			System.out.println("Coupon '" + coupon.getTitle() + "' Amount has been successfully updated");
+	}
 
+	/**
+	 * Purchases a coupon for the login customer and returns the purchase result.
+	 * The whole purchase (stock check, amount decrement and customer_coupon record)
+	 * is performed by the DAO in a single transaction on a single connection, so
+	 * the coupon can't be oversold and nothing is changed if the purchase fails.
+	 */
+	public PurchaseResult tryPurchaseCoupon(Coupon coupon) throws CouponSystemException {
+		Customer customer = this.getLoginCustomer();
+		if (customer.getId() == 0) {
+			customer.setId(custDao.getCustomerId(customer.getCustName()));
 		}
+		PurchaseResult result = custDao.purchaseCoupon(customer.getId(), coupon);
+		if (result == PurchaseResult.PURCHASED) {
+			coupDao.refreshCoupon(coupon.getTitle()); // the coupon amount has changed
+		}
+		return result;
 	}
 	
 	/**
@@ -99,39 +108,42 @@ public class CustomerFacade implements CouponClientFacade {
 		return coupDao.getAllCoupons();
 	}
 
+	/**
+	 * Retrieves a page of up to limit coupons (of all companies) following the
+	 * given coupon ID (use 0 for the first page and the page's next cursor for the
+	 * next one).
+	 */
+	public Page<Coupon> getAllCoupons(long afterId, int limit) throws CouponSystemException {
+		if (limit < 1) {
+			throw new InvalidInputException("Invalid page size ! limit must be positive!");
+		}
+		return coupDao.getCouponsPage(afterId, limit);
+	}
+
 	/**
 	 * MY ADD-ON: Retrieves a collection of all coupons by the requested type from all companies
 	 */
 	public Collection<Coupon> getAllCouponsByType(CouponType coupontype) throws CouponSystemException {
-		Coupon coupon = null;
-		Collection<Coupon> allCoupons = getAllCoupons();
-		Iterator<Coupon> it = allCoupons.iterator();
-		while (it.hasNext()) {
-			coupon = it.next();
-			if (coupon.getType() != coupontype) {
-				it.remove();
-			}
-			if (allCoupons.isEmpty()) {
-				throw new DataNotFoundException("No data found for the requested coupon type");
-			}
+		Collection<Coupon> allCoupons = coupDao.getCouponByType(coupontype);
+		if (allCoupons.isEmpty()) {
+			throw new DataNotFoundException("No data found for the requested coupon type");
 		}
 		return allCoupons;
 	}
+
+	/**
+	 * Retrieves the number of coupons (of all companies) of each coupon type, e.g
+	 * for the category browsing screen.
+	 */
+	public Map<CouponType, Integer> getCouponCountByType() throws CouponSystemException {
+		return coupDao.getCouponCountByType();
+	}
 	
 	/**
 	 *  MY ADD-ON: Retrieves all coupons by requested max price.
 	 */
 	public Collection<Coupon> getAllCouponsByPrice(double price) throws CouponSystemException {
-		Coupon coupon = null;
-		Collection<Coupon> couponsByPrice = custDao.getCoupons(this.getLoginCustomer());
-		Iterator<Coupon> it = couponsByPrice.iterator();
-		while (it.hasNext()) {
-			coupon = it.next();
-			if (coupon.getPrice() > price) {
-				it.remove();
-			}
-		}
-		return couponsByPrice;
+		return getAllPurchasedCoupons(CouponFilter.byMaxPrice(price));
 	}
 	/**
 	 * Retrieves a specific customer's purchased coupons.
@@ -142,36 +154,27 @@ public class CustomerFacade implements CouponClientFacade {
 	}
 
 	
+	/**
+	 * Retrieves a specific customer's purchased coupons which match the given
+	 * filter (coupon type, max price and/or max end date). the filter is applied by
+	 * the database.
+	 */
+	public Collection<Coupon> getAllPurchasedCoupons(CouponFilter filter) throws CouponSystemException {
+		return custDao.getCoupons(this.getLoginCustomer(), filter);
+	}
+
 	/**
 	 * Retrieves a specific customer's purchased coupons by requested coupon type.
 	 */
 	public Collection<Coupon> getAllPurchasedCouponsByType(CouponType coupontype) throws CouponSystemException {
-		Coupon coupon = null;
-		Collection<Coupon> couponsByType = custDao.getCoupons(this.getLoginCustomer());
-		Iterator<Coupon> it = couponsByType.iterator();
-		while (it.hasNext()) {
-			coupon = it.next();
-			if (coupon.getType() != coupontype) {
-				it.remove();
-			}
-		}
-		return couponsByType;
+		return getAllPurchasedCoupons(CouponFilter.byType(coupontype));
 	}
 
 	/**
 	 * Retrieves a specific customer's purchased coupons by requested max price.
 	 */
 	public Collection<Coupon> getAllPurchasedCouponsByPrice(double price) throws CouponSystemException {
-		Coupon coupon = null;
-		Collection<Coupon> couponsByPrice = custDao.getCoupons(this.getLoginCustomer());
-		Iterator<Coupon> it = couponsByPrice.iterator();
-		while (it.hasNext()) {
-			coupon = it.next();
-			if (coupon.getPrice() > price) {
-				it.remove();
-			}
-		}
-		return couponsByPrice;
+		return getAllPurchasedCoupons(CouponFilter.byMaxPrice(price));
 	}
 
 	/**
@@ -196,42 +199,4 @@ public class CustomerFacade implements CouponClientFacade {
 		return null;
 	}
 
-	/**
-	 * Validates that all coupon credential are valid and return true if: (1) price
-	 * is non-negative. (2) date is not set to the past. (3) start date is not after
-	 * end date. (4) amount is non-negative.(5) message is not empty. (6) title is
-	 * no empty.
-	 */
-	private Boolean couponCheck(Coupon coupon) throws InvalidInputException {
-		// ELDAR YOU'LL NEED TO UNEBLE THE 2 FIRST DATE RESTRICTIONS IN ORDER TO
-		// ALLOW CREATION OF EXPIRED COUPON IN THE TEST WITHOUT HAVEING TO WAIT "ONLINE"
-		// UNTIL NEXT DAY (=TURN LINES 152-160 TO A COMMENT)
-		// (currently I'VE USED 10 miliSec interval just to show the thread works)
-
-		if (Calendar.getInstance().getTime().after(coupon.getStartDate())
-				|| coupon.getStartDate().after(coupon.getEndDate())) {
-			throw new InvalidInputException(
-					"Date cannot be set to the past and/or End Date must be later than start Date!");
-		}
-		if (Calendar.getInstance().getTime().after(coupon.getEndDate())) {
-			throw new InvalidInputException(
-					"Date cannot be set to the past and/or End Date must be later than start Date!");
-		}
-
-		if (coupon.getPrice() < 0) {
-			throw new InvalidInputException("Invalid price ! Price cannot be negative!");
-		}
-		if (coupon.getAmount() < 0) {
-			throw new InvalidInputException("Invalid amount ! Amount cannot be negative!");
-		}
-		if (coupon.getMessage().length() == 0) {
-			throw new InvalidInputException("Message cannot be empty ! please add a short coupon description!");
-		}
-		if (coupon.getTitle().length() == 0) {
-			throw new InvalidInputException("Title cannot be empty ! please add a coupon title!");
-		} else {
-			return true;
-		}
-	}
-
 }
@@ -0,0 +1,90 @@
+package com.main;
+
+import com.facade.CouponClientFacade;
+
+/**
+ * Sets the "Blueprint" for a ClientSession type objects. a client session is
+ * opened by a successful login (see CouponSystem.openSession()) and holds the
+ * logged in client and the facade which serves its requests, so the following
+ * requests of the client are served by the session token without logging in
+ * again.
+ *
+ * @author SegevSinay
+ */
+public class ClientSession {
+
+	private final String token;
+	private final ClientType clientType;
+	private final String name;
+	private final CouponClientFacade facade;
+	private final long created;
+	private volatile long lastAccess;
+
+	/**
+	 * Full constructor.
+	 */
+	ClientSession(String token, ClientType clientType, String name, CouponClientFacade facade, long now) {
+		this.token = token;
+		this.clientType = clientType;
+		this.name = name;
+		this.facade = facade;
+		this.created = now;
+		this.lastAccess = now;
+	}
+
+	/**
+	 * allows to get the session token.
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * allows to get the logged in client type.
+	 */
+	public ClientType getClientType() {
+		return clientType;
+	}
+
+	/**
+	 * allows to get the logged in client name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * allows to get the facade of the logged in client.
+	 */
+	public CouponClientFacade getFacade() {
+		return facade;
+	}
+
+	/**
+	 * allows to get the session creation time (in milliseconds).
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	/**
+	 * allows to get the time (in milliseconds) the session was last used.
+	 */
+	public long getLastAccess() {
+		return lastAccess;
+	}
+
+	void touch(long now) {
+		lastAccess = now;
+	}
+
+	/**
+	 * Returns a custom textual representation of the session (without the
+	 * token).
+	 */
+	@Override
+	public String toString() {
+		return "ClientSession [clientType=" + clientType + ", name=" + name + ", created=" + created
+				+ ", lastAccess=" + lastAccess + "]";
+	}
+}
@@ -1,28 +1,39 @@
 package com.main;
 
+import java.sql.Connection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import com.beans.Company;
 import com.beans.Customer;
+import com.beans.ExpirationReport;
 import com.connectionpool.ConnectionPool;
 import com.dao.CompanyDAO;
 import com.dao.CouponDAO;
 import com.dao.CustomerDAO;
-import com.dbdao.CompanyDBDAO;
-import com.dbdao.CouponDBDAO;
-import com.dbdao.CustomerDBDAO;
 import com.exceptions.ConnectionPoolException;
 import com.exceptions.CouponSystemException;
+import com.exceptions.DatabaseException;
 import com.exceptions.InvalidLoginCredentials;
 import com.facade.AdminFacade;
+import com.facade.AsyncFacade;
 import com.facade.CompanyFacade;
 import com.facade.CouponClientFacade;
 import com.facade.CustomerFacade;
+import com.facade.BoundedFacadeExecutor;
+import com.utilityclasses.CouponExpirationScheduler;
 import com.utilityclasses.DailyCouponExpirationTask;
+import com.utilityclasses.SchemaMigrator;
 /**
  * This is the coupon system Single-tone class which:
  * a.	Allows the different clients to Login into the system and perform different actions according to the Client type.
  * b.	Creating and running the DailyCouponExpirationTask.
  * c.	Loading the DAOs
  * d.	Contains the shutdown () method which shuts the coupon system gracefully.
+ * e.	Keeps the client sessions, so a logged in client is served by its session token.
+ * f.	Throttles the logins of a client which failed to login too many times.
+ * g.	Runs the facade operations asynchronously, on a bounded pool of threads (see BoundedFacadeExecutor).
  */
 public class CouponSystem {
 
@@ -32,7 +43,23 @@ public class CouponSystem {
 	private static CouponSystem coupSysInstance;
 	private ConnectionPool connPool;
 	private Boolean activateDailyCouponExpirationTask = true;
-	private Thread t = new DailyCouponExpirationTask();
+	private CouponExpirationScheduler expirationScheduler;
+	private SessionManager sessions;
+	private LoginThrottle loginThrottle;
+	private BoundedFacadeExecutor facadeExecutor;
+
+	// coupon cache settings (system properties)
+	public final static String COUPON_CACHE = "coupon.cache.enabled";
+	public final static String COUPON_CACHE_SIZE = "coupon.cache.maxSize";
+	public final static String COUPON_CACHE_TTL = "coupon.cache.ttl";
+	// applies the pending schema migrations on start unless set to false
+	public final static String SCHEMA_MIGRATE = "coupon.schema.migrate";
+	// the client sessions idle timeout in milliseconds (system property)
+	public final static String SESSION_IDLE_TIMEOUT = "coupon.session.idleTimeout";
+	// the number of failed logins within the failure window (in milliseconds)
+	// which throttle a client (system properties)
+	public final static String LOGIN_MAX_FAILURES = "coupon.login.maxFailures";
+	public final static String LOGIN_FAILURE_WINDOW = "coupon.login.failureWindow";
 
 	/**
 	 * loading and initiating
@@ -44,7 +71,13 @@ public class CouponSystem {
 			throw new ConnectionPoolException("Unable to load Driver!", e);
 		}
 		connPool = ConnectionPool.getInstance();
+		migrateSchema();
 		loadDAOs();
+		expirationScheduler = new CouponExpirationScheduler(new DailyCouponExpirationTask(coupDao));
+		sessions = new SessionManager(Long.getLong(SESSION_IDLE_TIMEOUT, 30 * 60 * 1000));
+		loginThrottle = new LoginThrottle(Integer.getInteger(LOGIN_MAX_FAILURES, 5),
+				Long.getLong(LOGIN_FAILURE_WINDOW, 15 * 60 * 1000));
+		facadeExecutor = new BoundedFacadeExecutor(connPool.getConfig().getMaxSize());
 		activateDailyCouponExpirationTask = true;
 		runDailyCouponExpirationTask();
 	}
@@ -60,86 +93,230 @@ public class CouponSystem {
 	}
 
 	/**
-	 * loads all the Daos and initiate them as DBDAO
+	 * brings the DB schema up to date (see SchemaMigrator) using a pooled
+	 * connection, unless the "coupon.schema.migrate" system property is false.
+	 * in that case the schema is only checked: the start fails with a
+	 * DatabaseException if the schema is older than the DAO's require (e.g the
+	 * login queries would fail on a missing index).
+	 */
+	private void migrateSchema() throws CouponSystemException {
+		Connection conn = connPool.getConnection();
+		try {
+			if (Boolean.parseBoolean(System.getProperty(SCHEMA_MIGRATE, "true"))) {
+				SchemaMigrator.migrate(conn);
+				return;
+			}
+			int current = SchemaMigrator.getCurrentVersion(conn);
+			if (current < SchemaMigrator.getLatestVersion()) {
+				throw new DatabaseException("The database schema version is " + current
+						+ " while the coupon system requires version " + SchemaMigrator.getLatestVersion()
+						+ ", please apply the schema migrations (set " + SCHEMA_MIGRATE + " to true)");
+			}
+		} finally {
+			connPool.returnConnection(conn);
+		}
+	}
+
+	/**
+	 * loads all the Daos from the DAORegistry, so the CouponSystem and every
+	 * facade it creates share the same DBDAO instances. the CouponDBDAO is wrapped
+	 * by a CachingCouponDAO when the "coupon.cache.enabled" system property is
+	 * true (the cache size and time to live in milliseconds are set using the
+	 * "coupon.cache.maxSize" and "coupon.cache.ttl" system properties).
 	 */
 	private void loadDAOs() throws CouponSystemException {
 
 		if (connPool != null) {
-			if (compDao == null) {
-				compDao = new CompanyDBDAO();
-			}
-			if (coupDao == null) {
-				coupDao = new CouponDBDAO();
-			}
-			if (custDao == null) {
-				custDao = new CustomerDBDAO();
-			}
+			DAORegistry daos = DAORegistry.getInstance();
+			compDao = daos.getCompanyDao();
+			coupDao = daos.getCouponDao();
+			custDao = daos.getCustomerDao();
 		}
 	}
 
 
 	/**
-	 * activates & runs the Daily Coupon Expiration Task.
+	 * activates & schedules the Daily Coupon Expiration Task.
 	 */
 	private void runDailyCouponExpirationTask() throws ConnectionPoolException, InterruptedException {
 		if (activateDailyCouponExpirationTask == true) { // ADD EXCEPTION!?!!?
-			t.start();
+			expirationScheduler.start();
 		}
 	}
 
+	/**
+	 * runs the Daily Coupon Expiration Task on demand (e.g after a bulk update of
+	 * coupon end dates), without waiting for the daily run.
+	 */
+	public Future<ExpirationReport> runCouponExpirationNow() {
+		return expirationScheduler.runNow();
+	}
+
+	/**
+	 * returns the coupon Dao (e.g for the coupon cache statistics).
+	 */
+	public CouponDAO getCouponDao() {
+		return coupDao;
+	}
+
+	/**
+	 * returns the Daily Coupon Expiration scheduler (e.g for its run metrics).
+	 */
+	public CouponExpirationScheduler getExpirationScheduler() {
+		return expirationScheduler;
+	}
+
 	/**
 	 * login by client type into the Coupon System. verifies that the login credentials
-	 * are valid and then grants access to the facade by client type.
+	 * are valid and then grants access to the facade by client type. the credentials
+	 * check returns the client's ID, so the logged in client is not read again by
+	 * its name. a client which failed to login too many times is rejected before
+	 * its credentials are checked (see LoginThrottle).
 	 */
 	public CouponClientFacade login(String name, String password, ClientType clientType) throws CouponSystemException {
+		if (!loginThrottle.tryAcquire(clientType, name)) {
+			throw new InvalidLoginCredentials("Too many failed login attempts! please try again later");
+		}
+		CouponClientFacade facade;
+		try {
+			facade = authenticate(name, password, clientType);
+		} catch (CouponSystemException | RuntimeException e) {
+			loginThrottle.cancelled(clientType, name);
+			throw e;
+		}
+		if (facade == null) {
+			loginThrottle.failed(clientType, name);
+			throw new InvalidLoginCredentials("Invalid Username/Password");
+		}
+		loginThrottle.succeeded(clientType, name);
+		return facade;
+	}
+
+	/**
+	 * checks the login credentials by client type and returns the client's
+	 * facade, or null if the credentials are invalid.
+	 */
+	private CouponClientFacade authenticate(String name, String password, ClientType clientType)
+			throws CouponSystemException {
 
 		switch (clientType) {
 
 		case ADMIN:
 			if (name.equals("admin") && password.equals("1234")) {
-				AdminFacade adminF = new AdminFacade();
+				AdminFacade adminF = new AdminFacade(compDao, custDao, coupDao, sessions);
 				return adminF;
-			} else {
-				throw new InvalidLoginCredentials("Invalid Username/Password");
 			}
+			return null;
 
 		case COMPANY:
-			if (compDao.login(name, password)) {
-				Company company = compDao.getCompanyByName(name);
-				CompanyFacade companyF = new CompanyFacade(company);
+			long compId = compDao.authenticate(name, password);
+			if (compId != 0) {
+				Company company = new Company();
+				company.setId(compId);
+				company.setCompName(name); // without the password, the facade is kept by the session
+				CompanyFacade companyF = new CompanyFacade(company, compDao, coupDao);
 				System.out.println("login for company '" + name + "' is confirmed");
-				companyF.setLoginCompany(company);
-				System.out.println(companyF.getLoginCompany());
 				return companyF;
-			} else {
-				throw new InvalidLoginCredentials("Invalid Username/Password");
 			}
+			return null;
 
 		case CUSTOMER:
-			if (custDao.login(name, password)) {
-				Customer customer = custDao.getCustomerByName(name);
-				CustomerFacade customerF = new CustomerFacade(customer);
+			long custId = custDao.authenticate(name, password);
+			if (custId != 0) {
+				Customer customer = new Customer(custId, name, null); // without the password
+				CustomerFacade customerF = new CustomerFacade(customer, custDao, coupDao);
 				System.out.println("login for customer '" + name + "' is confirmed");
 				return customerF;
-			} else {
-				throw new InvalidLoginCredentials("Invalid Username/Password");
 			}
+			return null;
 		}
 		return null;
 	}
 
+	/**
+	 * login by client type (see login()) and opens a session for the client.
+	 * returns the session token: the following requests of the client get its
+	 * facade using getFacade(token), without checking the credentials against the
+	 * database again, until the session is closed or expires (see
+	 * SessionManager).
+	 */
+	public String openSession(String name, String password, ClientType clientType) throws CouponSystemException {
+		CouponClientFacade facade = login(name, password, clientType);
+		return sessions.open(clientType, name, facade).getToken();
+	}
+
+	/**
+	 * returns the facade of the session of the given token. throws
+	 * InvalidLoginCredentials if the token is unknown or its session has expired
+	 * or was closed (the client should login again). the lookup is done in memory
+	 * only: the sessions of a company / customer are closed by the AdminFacade
+	 * once the client is removed or updated.
+	 */
+	public CouponClientFacade getFacade(String token) throws InvalidLoginCredentials {
+		ClientSession session = sessions.get(token);
+		if (session == null) {
+			throw new InvalidLoginCredentials("Session has expired! please login again");
+		}
+		return session.getFacade();
+	}
+
+	/**
+	 * closes the session of the given token (logout).
+	 */
+	public void closeSession(String token) {
+		sessions.close(token);
+	}
+
+	/**
+	 * returns the client sessions manager (e.g for its metrics).
+	 */
+	public SessionManager getSessionManager() {
+		return sessions;
+	}
+
+	/**
+	 * returns the login throttle (e.g for its passed / rejected metrics).
+	 */
+	public LoginThrottle getLoginThrottle() {
+		return loginThrottle;
+	}
+
+	/**
+	 * login by client type (see login()) asynchronously. the returned future
+	 * completes with the client's facade, or exceptionally with
+	 * InvalidLoginCredentials.
+	 */
+	public CompletableFuture<CouponClientFacade> loginAsync(String name, String password, ClientType clientType) {
+		return facadeExecutor.submit(() -> login(name, password, clientType));
+	}
+
+	/**
+	 * returns an AsyncFacade which runs the operations of the given (logged in)
+	 * facade asynchronously, up to the connection pool size at once.
+	 */
+	public <F extends CouponClientFacade> AsyncFacade<F> async(F facade) {
+		return new AsyncFacade<>(facade, facadeExecutor);
+	}
+
+	/**
+	 * returns the facade executor (e.g for its active / waiting operations).
+	 */
+	public BoundedFacadeExecutor getFacadeExecutor() {
+		return facadeExecutor;
+	}
+
 	/**
 	 * shuts down the Coupon System gracefully.
 	 */
 	public void shutdown() throws ConnectionPoolException {
+		expirationScheduler.shutdown();
+		System.out.println("System is shutting down...");
 		try {
-			t.interrupt();
-			t.join();
-			System.out.println("System is shutting down...");
-			connPool.closeAllConnection();
+			facadeExecutor.shutdown(30, TimeUnit.SECONDS);
 		} catch (InterruptedException e) {
-			e.printStackTrace();
+			Thread.currentThread().interrupt();
 		}
+		connPool.closeAllConnection();
 		System.out.println("System shutdown completed successfully");
 		System.exit(0);
 	}
@@ -0,0 +1,83 @@
+package com.main;
+
+import com.dao.CompanyDAO;
+import com.dao.CouponDAO;
+import com.dao.CustomerDAO;
+import com.dbdao.CachingCouponDAO;
+import com.dbdao.CompanyDBDAO;
+import com.dbdao.CouponDBDAO;
+import com.dbdao.CustomerDBDAO;
+import com.exceptions.CouponSystemException;
+
+/**
+ * DAORegistry holds the DAO instances which are shared by the whole coupon
+ * system: the CouponSystem and every facade get the same Dao's instead of
+ * creating new ones on each login (each DBDAO constructor calls the
+ * synchronized ConnectionPool.getInstance()).
+ *
+ * Sharing is safe since the DBDAO's keep no state between calls, they only
+ * hold the connection pool (the statements are cached per connection and the
+ * coupon cache is thread-safe). the Dao's are created once, on the first call
+ * to getInstance(). the CouponDBDAO is wrapped by a CachingCouponDAO when the
+ * "coupon.cache.enabled" system property is true (see CouponSystem).
+ *
+ * @author SegevSinay
+ */
+public class DAORegistry {
+
+	private static volatile DAORegistry instance;
+
+	private final CompanyDAO compDao;
+	private final CustomerDAO custDao;
+	private final CouponDAO coupDao;
+
+	private DAORegistry() throws CouponSystemException {
+		compDao = new CompanyDBDAO();
+		custDao = new CustomerDBDAO();
+		CouponDAO coupDao = new CouponDBDAO();
+		if (Boolean.getBoolean(CouponSystem.COUPON_CACHE)) {
+			coupDao = new CachingCouponDAO(coupDao, Integer.getInteger(CouponSystem.COUPON_CACHE_SIZE, 1000),
+					Long.getLong(CouponSystem.COUPON_CACHE_TTL, 30 * 1000));
+		}
+		this.coupDao = coupDao;
+	}
+
+	/**
+	 * returns the registry, creating the shared Dao's on the first call. only the
+	 * first calls synchronize, the following calls read the volatile instance.
+	 */
+	public static DAORegistry getInstance() throws CouponSystemException {
+		DAORegistry registry = instance;
+		if (registry == null) {
+			synchronized (DAORegistry.class) {
+				registry = instance;
+				if (registry == null) {
+					registry = new DAORegistry();
+					instance = registry;
+				}
+			}
+		}
+		return registry;
+	}
+
+	/**
+	 * returns the shared company Dao.
+	 */
+	public CompanyDAO getCompanyDao() {
+		return compDao;
+	}
+
+	/**
+	 * returns the shared customer Dao.
+	 */
+	public CustomerDAO getCustomerDao() {
+		return custDao;
+	}
+
+	/**
+	 * returns the shared coupon Dao.
+	 */
+	public CouponDAO getCouponDao() {
+		return coupDao;
+	}
+}
@@ -0,0 +1,255 @@
+package com.main;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoginThrottle counts the failed logins of each client (by client type and
+ * name) and rejects the login attempts of a client which failed too many times
+ * within the failure window, before its credentials are checked against the
+ * database, so a burst of guessed passwords doesn't reach the DAOs and
+ * exhaust the connection pool.
+ *
+ * The failures are counted in a sliding window: each client has a counter for
+ * the current and for the previous fixed window, and the previous counter is
+ * weighted by the part of it which is still within the sliding window, so the
+ * failures decay gradually instead of being reset at once. a successful login
+ * clears the client's failures.
+ *
+ * An attempt which was let through is counted as pending until its outcome is
+ * reported (failed(), succeeded() or cancelled()), and the pending attempts
+ * count against the limit together with the failures, so a concurrent burst
+ * of guesses against one name can't pass the check before any of its failures
+ * was counted: at most maxFailures attempts of a client are in flight or have
+ * failed within the window.
+ *
+ * The counters are striped: a client is mapped by the hash of its key to one
+ * of the stripes and only that stripe is locked, so logins of different
+ * clients rarely contend. each stripe keeps a bounded number of clients (least
+ * recently used clients are dropped first), so a flood of made up names
+ * doesn't grow the memory.
+ *
+ * @author SegevSinay
+ */
+public class LoginThrottle {
+
+	private static final int STRIPES = 16;
+	private static final int MAX_CLIENTS_PER_STRIPE = 4096;
+
+	private final int maxFailures;
+	private final long window;
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	private final LongAdder passed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+
+	/**
+	 * LoginThrottle Constructor. a client is throttled once it failed maxFailures
+	 * times within the last window milliseconds.
+	 */
+	public LoginThrottle(int maxFailures, long window) {
+		this.maxFailures = maxFailures;
+		this.window = window;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * checks whether the client may attempt to login and if so counts the attempt
+	 * as pending. returns false (and counts a rejected attempt) if the client is
+	 * throttled. the outcome of an attempt which was let through must be reported
+	 * using failed(), succeeded() or cancelled().
+	 */
+	public boolean tryAcquire(ClientType clientType, String name) {
+		String key = key(clientType, name);
+		Stripe stripe = stripe(key);
+		synchronized (stripe) {
+			Counter counter = stripe.get(key);
+			if (counter == null) {
+				counter = new Counter();
+				stripe.put(key, counter);
+			} else if (counter.count(System.currentTimeMillis(), window) + counter.pending >= maxFailures) {
+				rejected.increment();
+				return false;
+			}
+			counter.pending++;
+		}
+		passed.increment();
+		return true;
+	}
+
+	/**
+	 * counts a failed login of the client (its pending attempt becomes a
+	 * failure).
+	 */
+	public void failed(ClientType clientType, String name) {
+		String key = key(clientType, name);
+		Stripe stripe = stripe(key);
+		synchronized (stripe) {
+			Counter counter = stripe.get(key);
+			if (counter == null) { // dropped by the stripe in the meantime
+				counter = new Counter();
+				stripe.put(key, counter);
+			}
+			counter.release();
+			counter.increment(System.currentTimeMillis(), window);
+		}
+		failures.increment();
+	}
+
+	/**
+	 * clears the failures of the client once it has successfully logged in.
+	 */
+	public void succeeded(ClientType clientType, String name) {
+		String key = key(clientType, name);
+		Stripe stripe = stripe(key);
+		synchronized (stripe) {
+			Counter counter = stripe.get(key);
+			if (counter != null) {
+				counter.release();
+				counter.clear();
+				if (counter.pending == 0) {
+					stripe.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * releases a pending attempt whose credentials could not be checked (e.g a
+	 * database error), without counting a failure.
+	 */
+	public void cancelled(ClientType clientType, String name) {
+		String key = key(clientType, name);
+		Stripe stripe = stripe(key);
+		synchronized (stripe) {
+			Counter counter = stripe.get(key);
+			if (counter != null) {
+				counter.release();
+				if (counter.pending == 0 && counter.count(System.currentTimeMillis(), window) == 0) {
+					stripe.remove(key);
+				}
+			}
+		}
+	}
+
+	private static String key(ClientType clientType, String name) {
+		return clientType + ":" + name;
+	}
+
+	private Stripe stripe(String key) {
+		int hash = key.hashCode();
+		return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+	}
+
+	/**
+	 * Returns the number of login attempts which were let through.
+	 */
+	public long getPassed() {
+		return passed.sum();
+	}
+
+	/**
+	 * Returns the number of login attempts which were rejected (throttled).
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Returns the number of failed logins counted.
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	/**
+	 * Returns the number of failures which throttle a client.
+	 */
+	public int getMaxFailures() {
+		return maxFailures;
+	}
+
+	/**
+	 * Returns the failure window in milliseconds.
+	 */
+	public long getWindow() {
+		return window;
+	}
+
+	@Override
+	public String toString() {
+		return "LoginThrottle [passed=" + getPassed() + ", rejected=" + getRejected() + ", failures="
+				+ getFailures() + ", maxFailures=" + maxFailures + ", window=" + window + "]";
+	}
+
+	/**
+	 * the failure counters of the clients which are mapped to a single stripe, in
+	 * least recently used order.
+	 */
+	private static class Stripe extends LinkedHashMap<String, Counter> {
+
+		private static final long serialVersionUID = 1L;
+
+		Stripe() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Counter> eldest) {
+			return size() > MAX_CLIENTS_PER_STRIPE;
+		}
+	}
+
+	/**
+	 * the failures of a single client in the current and the previous fixed
+	 * window, and its pending attempts.
+	 */
+	private static class Counter {
+
+		private long windowStart;
+		private int previous;
+		private int current;
+		private int pending;
+
+		void release() {
+			if (pending > 0) {
+				pending--;
+			}
+		}
+
+		void clear() {
+			previous = 0;
+			current = 0;
+		}
+
+		/**
+		 * moves the counters to the fixed window of the given time.
+		 */
+		private void roll(long now, long window) {
+			long start = now - now % window;
+			if (start != windowStart) {
+				previous = start - windowStart == window ? current : 0;
+				current = 0;
+				windowStart = start;
+			}
+		}
+
+		void increment(long now, long window) {
+			roll(now, window);
+			current++;
+		}
+
+		/**
+		 * returns the failures within the sliding window which ends at the given
+		 * time.
+		 */
+		double count(long now, long window) {
+			roll(now, window);
+			return previous * (double) (window - (now - windowStart)) / window + current;
+		}
+	}
+}
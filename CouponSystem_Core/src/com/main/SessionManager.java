@@ -0,0 +1,183 @@
+package com.main;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.facade.CouponClientFacade;
+
+/**
+ * SessionManager keeps the open client sessions in memory, keyed by their
+ * token, so a request carrying a session token is served without checking the
+ * client credentials against the database again.
+ *
+ * A token is 32 random bytes (SecureRandom) encoded as URL safe Base64. a
+ * session which was not used for longer than the idle timeout expires: it is
+ * removed when it is requested, and the expired sessions are swept once every
+ * half idle timeout (by the thread which opens a session), so no background
+ * thread is needed.
+ *
+ * @author SegevSinay
+ */
+public class SessionManager {
+
+	private final ConcurrentHashMap<String, ClientSession> sessions = new ConcurrentHashMap<>();
+	private final SecureRandom random = new SecureRandom();
+	private final long idleTimeout;
+	private final AtomicLong nextSweep;
+
+	private final LongAdder opened = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+
+	/**
+	 * SessionManager Constructor. sessions expire once they were not used for
+	 * idleTimeout milliseconds.
+	 */
+	public SessionManager(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+		this.nextSweep = new AtomicLong(System.currentTimeMillis() + idleTimeout / 2);
+	}
+
+	/**
+	 * opens a session for a logged in client and returns it.
+	 */
+	public ClientSession open(ClientType clientType, String name, CouponClientFacade facade) {
+		long now = System.currentTimeMillis();
+		sweep(now);
+		byte[] bytes = new byte[32];
+		random.nextBytes(bytes);
+		String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+		ClientSession session = new ClientSession(token, clientType, name, facade, now);
+		sessions.put(token, session);
+		opened.increment();
+		return session;
+	}
+
+	/**
+	 * returns the session of the given token and marks it as used, or null if the
+	 * token is unknown or its session has expired.
+	 */
+	public ClientSession get(String token) {
+		ClientSession session = token == null ? null : sessions.get(token);
+		if (session == null) {
+			misses.increment();
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if (now - session.getLastAccess() > idleTimeout) {
+			if (sessions.remove(token, session)) {
+				expired.increment();
+			}
+			misses.increment();
+			return null;
+		}
+		session.touch(now);
+		hits.increment();
+		return session;
+	}
+
+	/**
+	 * closes the session of the given token (logout). returns true if the session
+	 * was open.
+	 */
+	public boolean close(String token) {
+		return token != null && sessions.remove(token) != null;
+	}
+
+	/**
+	 * closes all the sessions of the given client (e.g once the client was
+	 * removed or its password was changed). returns the number of closed
+	 * sessions.
+	 */
+	public int closeAll(ClientType clientType, String name) {
+		int closed = 0;
+		for (Iterator<ClientSession> it = sessions.values().iterator(); it.hasNext();) {
+			ClientSession session = it.next();
+			if (session.getClientType() == clientType && session.getName().equals(name)) {
+				it.remove();
+				closed++;
+			}
+		}
+		return closed;
+	}
+
+	/**
+	 * removes the expired sessions. returns the number of removed sessions.
+	 */
+	public int removeExpired() {
+		long now = System.currentTimeMillis();
+		int removed = 0;
+		for (Iterator<ClientSession> it = sessions.values().iterator(); it.hasNext();) {
+			if (now - it.next().getLastAccess() > idleTimeout) {
+				it.remove();
+				removed++;
+			}
+		}
+		expired.add(removed);
+		return removed;
+	}
+
+	/**
+	 * removes the expired sessions if the sweep is due (only one thread sweeps).
+	 */
+	private void sweep(long now) {
+		long due = nextSweep.get();
+		if (now >= due && nextSweep.compareAndSet(due, now + idleTimeout / 2)) {
+			removeExpired();
+		}
+	}
+
+	/**
+	 * Returns the number of open sessions (including expired sessions which were
+	 * not removed yet).
+	 */
+	public int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * Returns the sessions idle timeout in milliseconds.
+	 */
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Returns the number of sessions opened.
+	 */
+	public long getOpened() {
+		return opened.sum();
+	}
+
+	/**
+	 * Returns the number of requests which were served by an open session.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of requests with an unknown or expired token.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of sessions which have expired.
+	 */
+	public long getExpired() {
+		return expired.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "SessionManager [sessions=" + size() + ", opened=" + getOpened() + ", hits=" + getHits()
+				+ ", misses=" + getMisses() + ", expired=" + getExpired() + "]";
+	}
+}
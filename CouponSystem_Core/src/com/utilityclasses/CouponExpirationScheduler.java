@@ -0,0 +1,354 @@
+package com.utilityclasses;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.beans.ExpirationReport;
+import com.exceptions.ConnectionPoolException;
+import com.exceptions.CouponSystemException;
+import com.exceptions.DailyTaskException;
+
+/**
+ * CouponExpirationScheduler runs the DailyCouponExpirationTask once a day at a
+ * fixed wall clock time (03:00 by default) instead of 24 hours after the system
+ * was started. the next run is recalculated after every run, so daylight saving
+ * changes do not shift the run time.
+ *
+ * The time of the last successful run is kept in the
+ * "files/lastExpirationRun.txt" file, in case the system was down at the
+ * scheduled time the task is run once upon start (catch-up).
+ *
+ * All runs (scheduled, catch-up and on demand) are executed by a single thread,
+ * therefore two runs never overlap.
+ *
+ * Available settings (system properties): (1) coupon.expiration.runAt - the
+ * daily run time (HH:mm). (2) coupon.expiration.chunkSize - maximum coupons
+ * removed per transaction. (3) coupon.expiration.stateFile - the last run file.
+ *
+ * @author SegevSinay
+ */
+public class CouponExpirationScheduler {
+
+	public final static String RUN_AT = "coupon.expiration.runAt";
+	public final static String CHUNK_SIZE = "coupon.expiration.chunkSize";
+	public final static String STATE_FILE = "coupon.expiration.stateFile";
+
+	private final DailyCouponExpirationTask task;
+	private final LocalTime runAt;
+	private final File stateFile;
+	private final ScheduledExecutorService executor;
+	private ScheduledFuture<?> nextRun;
+
+	// run metrics
+	private final AtomicLong runs = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong totalDurationMillis = new AtomicLong();
+	private volatile long lastDurationMillis;
+	private volatile long maxDurationMillis;
+	private volatile LocalDateTime lastRunTime;
+	private volatile ExpirationReport lastReport;
+	private volatile String lastFailure;
+
+	/**
+	 * CouponExpirationScheduler Constructor. loads the settings from the system
+	 * properties, the scheduler is not started until start() is called.
+	 */
+	public CouponExpirationScheduler() throws CouponSystemException {
+		this(new DailyCouponExpirationTask());
+	}
+
+	/**
+	 * CouponExpirationScheduler Constructor. loads the settings from the system
+	 * properties and runs the given task.
+	 */
+	public CouponExpirationScheduler(DailyCouponExpirationTask task) throws CouponSystemException {
+		this(task, parseRunAt(System.getProperty(RUN_AT, "03:00")),
+				new File(System.getProperty(STATE_FILE, "files/lastExpirationRun.txt")));
+		task.setChunkSize(parseChunkSize(System.getProperty(CHUNK_SIZE, String.valueOf(task.getChunkSize()))));
+	}
+
+	/**
+	 * CouponExpirationScheduler Constructor. runs the given task daily at the given
+	 * time.
+	 */
+	public CouponExpirationScheduler(DailyCouponExpirationTask task, LocalTime runAt, File stateFile)
+			throws ConnectionPoolException {
+		this.task = task;
+		this.runAt = runAt;
+		this.stateFile = stateFile;
+		this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "coupon-expiration-scheduler");
+			t.setDaemon(true);
+			return t;
+		});
+		this.lastRunTime = readLastRun();
+	}
+
+	/**
+	 * starts the scheduler. runs the task immediately in case the last scheduled
+	 * run was missed and schedules the next daily run.
+	 */
+	public synchronized void start() {
+		if (isRunMissed()) {
+			System.out.println("COUPON_CLEANER: scheduled run was missed (last run: "
+					+ (lastRunTime == null ? "never" : lastRunTime) + "), running now");
+			executor.execute(this::scheduledRun);
+		}
+		scheduleNextRun();
+	}
+
+	/**
+	 * runs the task as soon as the scheduler thread is free (i.e after the current
+	 * run, if any) and returns its report.
+	 */
+	public Future<ExpirationReport> runNow() {
+		return executor.submit(this::runOnce);
+	}
+
+	/**
+	 * runs the task on demand and waits for it to complete.
+	 */
+	public ExpirationReport runNowAndWait() throws CouponSystemException {
+		try {
+			return runNow().get();
+		} catch (InterruptedException e) {
+			throw new DailyTaskException("wait has been interrupted!", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CouponSystemException) {
+				throw (CouponSystemException) e.getCause();
+			}
+			throw new DailyTaskException("Daily expired coupon removal process has failed!", e.getCause());
+		}
+	}
+
+	/**
+	 * stops the scheduler, waits for the current run (if any) to complete.
+	 */
+	public synchronized void shutdown() {
+		executor.shutdownNow();
+		try {
+			if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+				System.err.println("COUPON_CLEANER: the current run did not complete in time");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		System.out.println("Daily Task is Stopped!");
+	}
+
+	/**
+	 * runs the task once, records the run metrics and the last run time.
+	 */
+	private ExpirationReport runOnce() throws CouponSystemException {
+		long start = System.currentTimeMillis();
+		try {
+			ExpirationReport report = task.removeExpiredCoupons();
+			lastReport = report;
+			lastRunTime = LocalDateTime.now();
+			writeLastRun(lastRunTime);
+			return report;
+		} catch (CouponSystemException | RuntimeException e) {
+			failures.incrementAndGet();
+			lastFailure = LocalDateTime.now() + " " + e;
+			throw e;
+		} finally {
+			long duration = System.currentTimeMillis() - start;
+			runs.incrementAndGet();
+			totalDurationMillis.addAndGet(duration);
+			lastDurationMillis = duration;
+			maxDurationMillis = Math.max(maxDurationMillis, duration);
+		}
+	}
+
+	/**
+	 * the scheduled run, a failure is counted by the run metrics (see
+	 * getFailures() and getLastFailure()) and the task will run again the
+	 * following day.
+	 */
+	private void scheduledRun() {
+		try {
+			runOnce();
+		} catch (CouponSystemException | RuntimeException e) {
+			System.err.println("COUPON_CLEANER: scheduled run has failed (" + failures.get() + " failed runs). " + e);
+		}
+	}
+
+	/**
+	 * schedules the next run at the next occurrence of the run time, the following
+	 * run is scheduled once it completes.
+	 */
+	private synchronized void scheduleNextRun() {
+		if (executor.isShutdown()) {
+			return;
+		}
+		ZonedDateTime now = ZonedDateTime.now();
+		ZonedDateTime next = nextRunTime(now);
+		nextRun = executor.schedule(() -> {
+			scheduledRun();
+			scheduleNextRun();
+		}, next.toInstant().toEpochMilli() - now.toInstant().toEpochMilli(), TimeUnit.MILLISECONDS);
+		System.out.println("COUPON_CLEANER: next run is scheduled to " + next.toLocalDateTime());
+	}
+
+	/**
+	 * returns the first run time after the given time.
+	 */
+	private ZonedDateTime nextRunTime(ZonedDateTime now) {
+		ZonedDateTime next = now.with(runAt);
+		if (!next.isAfter(now)) {
+			next = now.plusDays(1).with(runAt);
+		}
+		return next;
+	}
+
+	/**
+	 * returns true if the task did not run since the last time it was scheduled to
+	 * run.
+	 */
+	private boolean isRunMissed() {
+		ZonedDateTime now = ZonedDateTime.now();
+		ZonedDateTime lastScheduled = nextRunTime(now).minusDays(1);
+		return lastRunTime == null || lastRunTime.atZone(ZoneId.systemDefault()).isBefore(lastScheduled);
+	}
+
+	private LocalDateTime readLastRun() {
+		if (!stateFile.exists()) {
+			return null;
+		}
+		try (Scanner sc = new Scanner(stateFile);) {
+			return sc.hasNextLine() ? LocalDateTime.parse(sc.nextLine().trim()) : null;
+		} catch (FileNotFoundException | DateTimeParseException e) {
+			System.err.println("Unable to read the last expiration run from " + stateFile + ". " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void writeLastRun(LocalDateTime time) {
+		try (PrintWriter writer = new PrintWriter(stateFile);) {
+			writer.println(time);
+		} catch (IOException e) {
+			System.err.println("Unable to write the last expiration run to " + stateFile + ". " + e.getMessage());
+		}
+	}
+
+	private static LocalTime parseRunAt(String runAt) throws DailyTaskException {
+		try {
+			return LocalTime.parse(runAt.trim());
+		} catch (DateTimeParseException e) {
+			throw new DailyTaskException("Invalid " + RUN_AT + " value '" + runAt + "', expected HH:mm", e);
+		}
+	}
+
+	private static int parseChunkSize(String chunkSize) throws DailyTaskException {
+		int size;
+		try {
+			size = Integer.parseInt(chunkSize.trim());
+		} catch (NumberFormatException e) {
+			throw new DailyTaskException(
+					"Invalid " + CHUNK_SIZE + " value '" + chunkSize + "', expected a positive number", e);
+		}
+		if (size <= 0) {
+			throw new DailyTaskException(
+					"Invalid " + CHUNK_SIZE + " value '" + chunkSize + "', expected a positive number");
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the daily run time.
+	 */
+	public LocalTime getRunAt() {
+		return runAt;
+	}
+
+	/**
+	 * Returns the time of the next scheduled run, or null if the scheduler is not
+	 * started.
+	 */
+	public synchronized LocalDateTime getNextRunTime() {
+		if (nextRun == null || nextRun.isDone()) {
+			return null;
+		}
+		return LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(nextRun.getDelay(TimeUnit.MILLISECONDS)));
+	}
+
+	/**
+	 * Returns the time of the last successful run, or null if the task never ran.
+	 */
+	public LocalDateTime getLastRunTime() {
+		return lastRunTime;
+	}
+
+	/**
+	 * Returns the report of the last successful run, or null if the task did not
+	 * run since the system was started.
+	 */
+	public ExpirationReport getLastReport() {
+		return lastReport;
+	}
+
+	/**
+	 * Returns the number of runs (successful and failed).
+	 */
+	public long getRuns() {
+		return runs.get();
+	}
+
+	/**
+	 * Returns the number of failed runs.
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Returns the time and cause of the last failed run, or null if no run has
+	 * failed.
+	 */
+	public String getLastFailure() {
+		return lastFailure;
+	}
+
+	public long getLastDurationMillis() {
+		return lastDurationMillis;
+	}
+
+	public long getMaxDurationMillis() {
+		return maxDurationMillis;
+	}
+
+	public long getAverageDurationMillis() {
+		long count = runs.get();
+		return count == 0 ? 0 : totalDurationMillis.get() / count;
+	}
+
+	public DailyCouponExpirationTask getTask() {
+		return task;
+	}
+
+	/**
+	 * Returns a custom textual representation of the scheduler metrics.
+	 */
+	@Override
+	public String toString() {
+		return "CouponExpirationScheduler [runAt=" + runAt + ", nextRun=" + getNextRunTime() + ", lastRun="
+				+ lastRunTime + ", runs=" + getRuns() + ", failures=" + getFailures() + ", lastDurationMillis="
+				+ lastDurationMillis + ", maxDurationMillis=" + maxDurationMillis + ", averageDurationMillis="
+				+ getAverageDurationMillis() + ", lastFailure=" + lastFailure + "]";
+	}
+}
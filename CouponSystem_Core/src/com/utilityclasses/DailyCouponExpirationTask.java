@@ -4,6 +4,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import com.beans.Coupon;
+import com.beans.ExpirationReport;
 import com.dao.CouponDAO;
 import com.dbdao.CouponDBDAO;
 import com.exceptions.ConnectionPoolException;
@@ -12,31 +13,70 @@ import com.exceptions.DailyTaskException;
 import com.exceptions.DatabaseException;
 
 /**
- * DailyCouponExperationTask extends Thread class (which in turn implements
- * runnable) the thread is implemented by the singleton Class "CouponSystem";
- * it's purpose is to set the coupon system daily thread operation.
+ * DailyCouponExperationTask removes the expired coupons from the database. the
+ * task is run once a day, at a fixed time, by the CouponExpirationScheduler
+ * which is started by the singleton Class "CouponSystem".
  * 
  * @author Segev Sinay
  */
-public class DailyCouponExpirationTask extends Thread {
+public class DailyCouponExpirationTask {
 
 	private CouponDAO coupDao;
-	private Boolean quit;
+	private boolean bulkExpiration = true;
+	private int chunkSize = 1000;
 
 	/**
-	 * DailyCouponExperationTask Constructor. initiates the Dao and quit variable
-	 * value.
+	 * DailyCouponExperationTask Constructor. initiates the Dao.
 	 */
 	public DailyCouponExpirationTask() throws ConnectionPoolException {
-		coupDao = new CouponDBDAO();
-		quit = false;
+		this(new CouponDBDAO());
 	}
 
 	/**
-	 * defines the DailyCouponExperationTask activity and puts the Thread to sleep
-	 * for 24 hours.
-	 * 
-	 * Sets the DailyCouponExperationTask thread mechanism. The
+	 * DailyCouponExperationTask Constructor. uses the given Dao (e.g the Dao
+	 * loaded by the CouponSystem).
+	 */
+	public DailyCouponExpirationTask(CouponDAO coupDao) {
+		this.coupDao = coupDao;
+	}
+
+	/**
+	 * removes all expired coupons once, using either the bulk mode (default) or
+	 * the coupon by coupon mode. the task is run daily by the
+	 * CouponExpirationScheduler.
+	 */
+	public ExpirationReport removeExpiredCoupons() throws CouponSystemException {
+		if (bulkExpiration) {
+			return removeExpiredCouponsInBulk();
+		}
+		return removeExpiredCouponsOneByOne();
+	}
+
+	/**
+	 * Removes all expired coupons using set based deletes, in chunks of up to
+	 * chunkSize coupons per transaction, and reports the removal counts and run
+	 * time.
+	 */
+	public ExpirationReport removeExpiredCouponsInBulk() throws CouponSystemException {
+		try {
+			ExpirationReport report = coupDao.removeExpiredCoupons(chunkSize);
+			if (report.getRemovedCoupons() > 0) {
+				System.out.println("COUPON_CLEANER: Total of " + report.getRemovedCoupons()
+						+ " expired coupons were removed successfully (" + report.getRemovedCustomerCoupons()
+						+ " customer_coupon records, " + report.getRemovedCompanyCoupons()
+						+ " company_coupon records) in " + report.getChunks() + " chunks, "
+						+ report.getElapsedMillis() + " ms");
+			} else {
+				System.out.println("COUPON_CLEANER: No expired coupons to remove");
+			}
+			return report;
+		} catch (DatabaseException e) {
+			throw new DailyTaskException("Daily expired coupon removal process has failed!", e);
+		}
+	}
+
+	/**
+	 * Sets the coupon by coupon DailyCouponExperationTask mechanism. The
 	 * DailyCouponExperationTask will check the coupons table (in the database) and
 	 * collect to a coupon list all the expired coupons based on their end date.
 	 * Once it reviews the full table records, it will start removing them one at
@@ -44,68 +84,69 @@ public class DailyCouponExpirationTask extends Thread {
 	 * an DailyTaskException in case not all expired coupons were removed
 	 * successfully or in case it was unable to complete it's task.
 	 */
-	@Override
-	public void run() {
-		while (quit == false) {
-			try {
-				Thread.sleep(60*60*24*1000);// should be 60*60*24*1000 =864000000 = 24 hrs in milliseconds.
-									// BUT for test purpose ONLY i've used 10 in order to demonstrate it works
-			} catch (InterruptedException e) {
-				break;
-			}
-			try {
+	public ExpirationReport removeExpiredCouponsOneByOne() throws CouponSystemException {
+		long start = System.currentTimeMillis();
+		try {
+			List<Coupon> expiredCoupons = coupDao.collectExpiredCoupons();
+			int expiredCounter = expiredCoupons.size();
+			int removedCounter = 0;
+			if (expiredCoupons.size() > 0) {
+				System.out.println("COUPON_CLEANER: Total expired coupons found: " + expiredCoupons.size());
+				Iterator<Coupon> it = expiredCoupons.iterator();
+				Coupon coupon = null;
 				try {
-					List<Coupon> expiredCoupons = coupDao.collectExpiredCoupons();
-					int expiredCounter = expiredCoupons.size();
-					int removedCounter = 0;
-					if (expiredCoupons.size() > 0) {
-						System.out.println("COUPON_CLEANER: Total expired coupons found: " + expiredCoupons.size());
-						Iterator<Coupon> it = expiredCoupons.iterator();
-						Coupon coupon = null;
-						try {
-							while (it.hasNext()) {
-								coupon = it.next();
-								coupDao.removeCouponFromCompanyCoupon(coupon);
-								coupDao.removeCouponFromCustomerCoupon(coupon);
-								coupDao.removeCoupon(coupon);
-								removedCounter++;
-								System.out.println("COUPON_CLEANER: coupon '" + coupon.getTitle()
-										+ "' has been removed successfuly");
-							}
-						} catch (DatabaseException | ConnectionPoolException e) {
-							throw new DailyTaskException(
-									"COUPON_CLEANER: unable to remove coupon'" + coupon.getTitle() + "'", e);
-						}
-						System.out.println("COUPON_CLEANER: Total of " + removedCounter
-								+ " expired coupons were removed successfully");
-						if ((expiredCounter - removedCounter) != 0) {
-							throw new DailyTaskException("COUPON_CLEANER: Total of " + (expiredCounter - removedCounter)
-									+ " expired coupons were not removed !");
-						}
+					while (it.hasNext()) {
+						coupon = it.next();
+						coupDao.removeCouponFromCompanyCoupon(coupon);
+						coupDao.removeCouponFromCustomerCoupon(coupon);
+						coupDao.removeCoupon(coupon);
+						removedCounter++;
+						System.out.println("COUPON_CLEANER: coupon '" + coupon.getTitle()
+								+ "' has been removed successfuly");
 					}
-					System.out.println("COUPON_CLEANER: No expired coupons to remove");
-				} catch (DatabaseException e) {
-					throw new DailyTaskException("Daily expired coupon removal process has failed!", e);
+				} catch (DatabaseException | ConnectionPoolException e) {
+					throw new DailyTaskException(
+							"COUPON_CLEANER: unable to remove coupon'" + coupon.getTitle() + "'", e);
 				}
-
-			} catch (CouponSystemException e) {
-				System.out.println(e.getMessage());
-				e.printStackTrace();// for Debug purposes only
+				System.out.println("COUPON_CLEANER: Total of " + removedCounter
+						+ " expired coupons were removed successfully");
+				if ((expiredCounter - removedCounter) != 0) {
+					throw new DailyTaskException("COUPON_CLEANER: Total of " + (expiredCounter - removedCounter)
+							+ " expired coupons were not removed !");
+				}
+			} else {
+				System.out.println("COUPON_CLEANER: No expired coupons to remove");
 			}
+			ExpirationReport report = new ExpirationReport();
+			report.setRemovedCoupons(removedCounter);
+			report.setChunks(removedCounter);
+			report.setElapsedMillis(System.currentTimeMillis() - start);
+			return report;
+		} catch (DatabaseException e) {
+			throw new DailyTaskException("Daily expired coupon removal process has failed!", e);
 		}
-		System.out.println("Daily Task is Stopped!");
 	}
 
-	// NO NEED FOR THE FOLLOWING ACCORDING TO ELDAR:
-	public Boolean getQuit() {
-		return quit;
+	/**
+	 * allows to choose between the bulk removal (true, default) and the coupon by
+	 * coupon removal (false).
+	 */
+	public void setBulkExpiration(boolean bulkExpiration) {
+		this.bulkExpiration = bulkExpiration;
+	}
+
+	public boolean isBulkExpiration() {
+		return bulkExpiration;
 	}
 
-	public void stopTask(Boolean quit) {
-		this.quit = quit;
+	/**
+	 * allows to set the maximum coupons removed per transaction in bulk mode.
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
 	}
 
-	public boolean isQuit() {
-		return quit;
+	public int getChunkSize() {
+		return chunkSize;
 	}
 }
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Scanner;
@@ -13,6 +14,11 @@ import com.exceptions.DatabaseException;
 /**
  * this is a utility class that creates the initial database tables
  * and not a part of the coupon system.
+ * 
+ * the driver and database url are read from "files/driverUrl.txt" and
+ * "files/dbUrl.txt", they can be overridden using the "coupon.db.driver" and
+ * "coupon.db.url" system properties (e.g in order to run against an embedded
+ * database).
  *
  */
 public class DatabaseUtility extends CouponSystemException {
@@ -25,6 +31,9 @@ public class DatabaseUtility extends CouponSystemException {
 	private static File urlFile = new File("files/dbUrl.txt");
 	private static File driverFile = new File("files/driverUrl.txt");
 
+	public static final String DRIVER_PROPERTY = "coupon.db.driver";
+	public static final String URL_PROPERTY = "coupon.db.url";
+
 	public static String getUrl() {
 		return url;
 	}
@@ -37,15 +46,26 @@ public class DatabaseUtility extends CouponSystemException {
 	 * static initializer, will run on class load once, when class is loaded.
 	 */
 	static {
-		try (Scanner sc = new Scanner(driverFile);) { // loads the driver upon class load
-			driverUrl = sc.nextLine();
+		try {
+			driverUrl = System.getProperty(DRIVER_PROPERTY);
+			if (driverUrl == null) {
+				try (Scanner sc = new Scanner(driverFile);) { // loads the driver upon class load
+					driverUrl = sc.nextLine();
+				}
+			}
 			Class.forName(driverUrl);
 			System.out.println("Driver has been successfully loaded");
 		} catch (FileNotFoundException | ClassNotFoundException e) {
 			System.err.println("Driver had not been loaded" + e.getMessage());
 		}
-		try (Scanner sc = new Scanner(urlFile);) {
-			url = sc.nextLine() + ";create=true";
+		try {
+			url = System.getProperty(URL_PROPERTY);
+			if (url == null) {
+				try (Scanner sc = new Scanner(urlFile);) {
+					url = sc.nextLine();
+				}
+			}
+			url += ";create=true";
 			System.out.println("Database connection to:" + "\n" + url + ", has been successfully created.");
 		} catch (FileNotFoundException e) {
 			System.err.println(e.getMessage());
@@ -55,18 +75,80 @@ public class DatabaseUtility extends CouponSystemException {
 		}
 	}
 
+	/**
+	 * returns the companies table DDL.
+	 */
+	static String companiesTableSql() {
+		String sql = "CREATE TABLE companies (";
+		sql += "ID BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY(START WITH 1, INCREMENT BY 1),";
+		sql += "COMP_NAME VARCHAR(20) UNIQUE NOT NULL,";
+		sql += "PASSWORD VARCHAR(10) NOT NULL,";
+		sql += "EMAIL VARCHAR(30) NOT NULL";
+		sql += ")";
+		return sql;
+	}
+
+	/**
+	 * returns the customers table DDL.
+	 */
+	static String customersTableSql() {
+		String sql = "CREATE TABLE customers(";
+		sql += "ID BIGINT PRIMARY KEY NOT NULL GENERATED ALWAYS AS IDENTITY (START WITH 1, INCREMENT BY 1),";
+		sql += "CUST_NAME VARCHAR(20) UNIQUE NOT NULL,";
+		sql += "PASSWORD VARCHAR(10) NOT NULL";
+		sql += ")";
+		return sql;
+	}
+
+	/**
+	 * returns the coupons table DDL.
+	 */
+	static String couponsTableSql() {
+		String sql = "CREATE TABLE coupons(";
+		sql += "ID BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY (START WITH 1, INCREMENT BY 1),";
+		sql += "TITLE VARCHAR(30) UNIQUE NOT NULL,"; // header - short coupon description
+		sql += "START_DATE DATE NOT NULL,"; // coupon valid from date
+		sql += "END_DATE DATE NOT NULL,";// coupon expired date
+		sql += "AMOUNT INTEGER NOT NULL,";// coupon quantity in stock
+		sql += "TYPE VARCHAR(30) NOT NULL,"; // coupon category - a closed list (ENUM).
+		sql += "MESSAGE VARCHAR(200) NOT NULL,"; // coupon detailed description
+		sql += "PRICE FLOAT NOT NULL,"; // coupon listed price (for customers)
+		sql += "IMAGE VARCHAR(10000)"; // link or relevant picture location
+		sql += ")";
+		return sql;
+	}
+
+	/**
+	 * returns the customer_coupon table DDL.
+	 */
+	static String customerCouponTableSql() {
+		String sql = "CREATE TABLE customer_coupon(";
+		sql += "CUST_ID BIGINT NOT NULL,";
+		sql += "COUPON_ID BIGINT NOT NULL,";
+		sql += "PRIMARY KEY(CUST_ID, COUPON_ID )";
+		sql += ")";
+		return sql;
+	}
+
+	/**
+	 * returns the company_coupon table DDL.
+	 */
+	static String companyCouponTableSql() {
+		String sql = "CREATE TABLE company_coupon(";
+		sql += "COMP_ID BIGINT NOT NULL,";
+		sql += "COUPON_ID BIGINT NOT NULL, ";
+		sql += "PRIMARY KEY(COMP_ID, COUPON_ID)";
+		sql += ")";
+		return sql;
+	}
+
 	/**
 	 * creates the company table in the DB
 	 */
 	public static void createCompaniesTable() throws DatabaseException {
 		try (Connection conn = DriverManager.getConnection(getUrl());) {
 
-			String sql = "CREATE TABLE companies (";
-			sql += "ID BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY(START WITH 1, INCREMENT BY 1),";
-			sql += "COMP_NAME VARCHAR(20) UNIQUE NOT NULL,";
-			sql += "PASSWORD VARCHAR(10) NOT NULL,";
-			sql += "EMAIL VARCHAR(30) NOT NULL";
-			sql += ")";
+			String sql = companiesTableSql();
 			Statement stmt = conn.createStatement();
 			stmt.executeUpdate(sql);
 			System.out.println(sql);
@@ -101,11 +183,7 @@ public class DatabaseUtility extends CouponSystemException {
 	public static void createCustomersTable() throws DatabaseException {
 		try (Connection conn = DriverManager.getConnection(getUrl());) {
 
-			String sql = "CREATE TABLE customers(";
-			sql += "ID BIGINT PRIMARY KEY NOT NULL GENERATED ALWAYS AS IDENTITY (START WITH 1, INCREMENT BY 1),";
-			sql += "CUST_NAME VARCHAR(20) UNIQUE NOT NULL,";
-			sql += "PASSWORD VARCHAR(10) NOT NULL";
-			sql += ")";
+			String sql = customersTableSql();
 			Statement stmt = conn.createStatement();
 			stmt.executeUpdate(sql);
 			System.out.println(sql);
@@ -134,21 +212,13 @@ public class DatabaseUtility extends CouponSystemException {
 	}
 
 	/**
-	 * creates the coupon table in the DB
+	 * creates the coupon table in the DB. coupons are retrieved by type (category)
+	 * using the COUPONS_TYPE_PRICE_IDX index of the secondary index pack (see
+	 * SchemaIndexes).
 	 */
 	public static void createCouponsTable() throws DatabaseException {
 		try (Connection conn = DriverManager.getConnection(getUrl());) {
-			String sql = "CREATE TABLE coupons(";
-			sql += "ID BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY (START WITH 1, INCREMENT BY 1),";
-			sql += "TITLE VARCHAR(30) UNIQUE NOT NULL,"; // header - short coupon description
-			sql += "START_DATE DATE NOT NULL,"; // coupon valid from date
-			sql += "END_DATE DATE NOT NULL,";// coupon expired date
-			sql += "AMOUNT INTEGER NOT NULL,";// coupon quantity in stock
-			sql += "TYPE VARCHAR(30) NOT NULL,"; // coupon category - a closed list (ENUM).
-			sql += "MESSAGE VARCHAR(200) NOT NULL,"; // coupon detailed description
-			sql += "PRICE FLOAT NOT NULL,"; // coupon listed price (for customers)
-			sql += "IMAGE VARCHAR(10000)"; // link or relevant picture location
-			sql += ")";
+			String sql = couponsTableSql();
 			Statement stmt = conn.createStatement();
 			stmt.executeUpdate(sql);
 			System.out.println(sql);
@@ -179,11 +249,7 @@ public class DatabaseUtility extends CouponSystemException {
 	public static void createCustomer_CouponTable() throws DatabaseException {
 		try (Connection conn = DriverManager.getConnection(getUrl());) {
 
-			String sql = "CREATE TABLE customer_coupon(";
-			sql += "CUST_ID BIGINT NOT NULL,";
-			sql += "COUPON_ID BIGINT NOT NULL,";
-			sql += "PRIMARY KEY(CUST_ID, COUPON_ID )";
-			sql += ")";
+			String sql = customerCouponTableSql();
 
 			Statement stmt = conn.createStatement();
 			stmt.executeUpdate(sql);
@@ -216,11 +282,7 @@ public class DatabaseUtility extends CouponSystemException {
 	 */
 	public static void createCompany_CouponTable() throws DatabaseException {
 		try (Connection conn = DriverManager.getConnection(getUrl());) {
-			String sql = "CREATE TABLE company_coupon(";
-			sql += "COMP_ID BIGINT NOT NULL,";
-			sql += "COUPON_ID BIGINT NOT NULL, ";
-			sql += "PRIMARY KEY(COMP_ID, COUPON_ID)";
-			sql += ")";
+			String sql = companyCouponTableSql();
 			Statement stmt = conn.createStatement();
 			stmt.executeUpdate(sql);
 			System.out.println(sql);
@@ -248,7 +310,17 @@ public class DatabaseUtility extends CouponSystemException {
 	}
 
 	/**
-	 * removes all tables from the DB
+	 * brings the DB schema up to date without removing any data, by applying the
+	 * pending schema migrations (see SchemaMigrator).
+	 */
+	public static void migrate() throws DatabaseException {
+		SchemaMigrator.migrate();
+	}
+
+	/**
+	 * removes all tables from the DB, including the schema version tables of
+	 * SchemaMigrator and SchemaIndexes, so createAllDBTables() applies all the
+	 * migrations again.
 	 */
 	public static void removeAllDBTables() throws DatabaseException {
 		try (Connection conn = DriverManager.getConnection(getUrl());) {
@@ -257,6 +329,8 @@ public class DatabaseUtility extends CouponSystemException {
 			removeCompany_CouponTable();
 			removeCustomersTable();
 			removeCustomer_CouponTable();
+			removeVersionTable(conn, SchemaMigrator.VERSION_TABLE);
+			removeVersionTable(conn, SchemaIndexes.VERSION_TABLE);
 
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to remove Database Tables! ", e);
@@ -268,26 +342,41 @@ public class DatabaseUtility extends CouponSystemException {
 		System.out.println("--------------------------------------------------");
 	}
 	/**
-	 * creates all tables in the DB
+	 * removes a schema version table, if it exists.
 	 */
-	public static void createAllDBTables() throws DatabaseException {
-		try (Connection con = DriverManager.getConnection(getUrl());) {
-			createCompaniesTable();
-			createCouponsTable();
-			createCompany_CouponTable();
-			createCustomersTable();
-			createCustomer_CouponTable();
-
-		} catch (SQLException e) {
-			throw new DatabaseException("Unable to create Database Tables! \ncause: ", e);
+	private static void removeVersionTable(Connection conn, String table) throws SQLException {
+		try (ResultSet rs = conn.getMetaData().getTables(null, null, table.toUpperCase(), null);) {
+			if (!rs.next()) {
+				return;
+			}
 		}
+		String sql = "DROP TABLE " + table;
+		try (Statement stmt = conn.createStatement();) {
+			stmt.executeUpdate(sql);
+		}
+		System.out.println(sql);
+	}
+
+	/**
+	 * creates all tables in the DB and applies the schema migrations (see
+	 * SchemaMigrator)
+	 */
+	public static void createAllDBTables() throws DatabaseException {
+		// each step opens its own connection
+		createCompaniesTable();
+		createCouponsTable();
+		createCompany_CouponTable();
+		createCustomersTable();
+		createCustomer_CouponTable();
+		SchemaMigrator.migrate();
 		System.out.println();
 		System.out.println("---------------------------------------------------");
 		System.out.println("-  Database tables has been successfully Created! -");
 		System.out.println("---------------------------------------------------");
 	}
 	/**
-	 * removes tables if exists and then creates all tables in the DB
+	 * removes tables if exists and then creates all tables in the DB and applies
+	 * all the schema migrations again (see SchemaMigrator)
 	 */
 	public static void resetAllDBTables() throws DatabaseException {
 		try (Connection con = DriverManager.getConnection(getUrl());) {
@@ -321,6 +410,12 @@ public class DatabaseUtility extends CouponSystemException {
 				removeCustomer_CouponTable();
 				createCustomer_CouponTable();
 			}
+			try (Statement stmt = con.createStatement();) {
+				stmt.executeUpdate("DELETE FROM " + SchemaMigrator.VERSION_TABLE);
+			} catch (SQLException e) {
+				// the schema version table doesn't exist yet
+			}
+			SchemaMigrator.migrate();
 
 		} catch (SQLException e) {
 			throw new DatabaseException("Unable to reset Database Tables! \ncause:", e);
@@ -0,0 +1,84 @@
+package com.utilityclasses;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * this is a utility class that hashes the clients passwords, so only a salted
+ * password hash (PASSWORD_HASH column) is stored and the login query compares
+ * it instead of the plain password (the plain PASSWORD column is dropped by
+ * schema migration V5).
+ *
+ * A hash is PBKDF2 (HmacSHA256) of the password with a random 16 bytes salt,
+ * stored as "iterations:salt:hash" (Base64), so the number of iterations can be
+ * raised (using the "coupon.password.iterations" system property) without
+ * invalidating the existing hashes. verify() compares the hashes in constant
+ * time (MessageDigest.isEqual) and a login of an unknown name is verified
+ * against a dummy hash, so the response time doesn't tell whether the name
+ * exists.
+ *
+ * @author SegevSinay
+ */
+public class PasswordHasher {
+
+	public final static String ITERATIONS_PROPERTY = "coupon.password.iterations";
+
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final int ITERATIONS = Integer.getInteger(ITERATIONS_PROPERTY, 10000);
+	private static final int SALT_LENGTH = 16;
+	private static final int KEY_LENGTH = 256;
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static final String DUMMY_HASH = hash("");
+
+	private PasswordHasher() {
+	}
+
+	/**
+	 * returns the salted hash of the given password.
+	 */
+	public static String hash(String password) {
+		byte[] salt = new byte[SALT_LENGTH];
+		RANDOM.nextBytes(salt);
+		Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+		return ITERATIONS + ":" + encoder.encodeToString(salt) + ":"
+				+ encoder.encodeToString(pbkdf2(password, salt, ITERATIONS));
+	}
+
+	/**
+	 * checks the given password against a stored hash. a null (or malformed) hash
+	 * never matches, but it is still verified against a dummy hash so it takes
+	 * the same time as a real check.
+	 */
+	public static boolean verify(String password, String storedHash) {
+		String[] parts = storedHash == null ? null : storedHash.split(":");
+		boolean valid = parts != null && parts.length == 3;
+		if (!valid) {
+			parts = DUMMY_HASH.split(":");
+		}
+		try {
+			Base64.Decoder decoder = Base64.getDecoder();
+			byte[] expected = decoder.decode(parts[2]);
+			byte[] actual = pbkdf2(password, decoder.decode(parts[1]), Integer.parseInt(parts[0]));
+			return MessageDigest.isEqual(expected, actual) && valid;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+		char[] chars = password == null ? new char[0] : password.toCharArray();
+		PBEKeySpec spec = new PBEKeySpec(chars, salt, iterations, KEY_LENGTH);
+		try {
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(ALGORITHM + " is not supported", e);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package com.utilityclasses;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.exceptions.DatabaseException;
+
+/**
+ * this is a utility class that creates and versions the secondary indexes of
+ * the coupon system tables (the indexes that serve the hot query predicates:
+ * join table deletes by coupon, expired coupons collection, coupons filtering
+ * by type and price and the company email availability check).
+ *
+ * Each index definition has a version. the created indexes and their versions
+ * are recorded in the "schema_indexes" table, createIndexes() creates the
+ * missing indexes and re-creates an index whose definition version has
+ * changed, so it can be run on every start. reportIndexes() reports for each
+ * index whether it exists and whether the optimizer currently uses it for the
+ * query it was created for.
+ *
+ * @author SegevSinay
+ */
+public class SchemaIndexes {
+
+	public final static String VERSION_TABLE = "schema_indexes";
+
+	private static final IndexDefinition[] INDEXES = {
+			new IndexDefinition(1, "CUSTOMER_COUPON_COUPON_IDX", "customer_coupon", "COUPON_ID",
+					"SELECT CUST_ID FROM customer_coupon WHERE COUPON_ID=0"),
+			new IndexDefinition(1, "COMPANY_COUPON_COUPON_IDX", "company_coupon", "COUPON_ID",
+					"SELECT COMP_ID FROM company_coupon WHERE COUPON_ID=0"),
+			// covers the expired coupons chunk query (END_DATE range, returning the ID)
+			new IndexDefinition(1, "COUPONS_END_DATE_IDX", "coupons", "END_DATE, ID",
+					"SELECT ID FROM coupons WHERE END_DATE<CURRENT_DATE"),
+			// replaces the single column COUPONS_TYPE_IDX (TYPE is its leading column)
+			new IndexDefinition(1, "COUPONS_TYPE_PRICE_IDX", "coupons", "TYPE, PRICE",
+					"SELECT ID FROM coupons WHERE TYPE='FOOD' AND PRICE<=0"),
+			new IndexDefinition(1, "COMPANIES_EMAIL_IDX", "companies", "EMAIL",
+					"SELECT EMAIL FROM companies WHERE EMAIL=''") };
+
+	/**
+	 * creates the missing indexes and re-creates the indexes whose definition
+	 * version has changed, in a single transaction. returns the number of indexes
+	 * created.
+	 */
+	public static int createIndexes() throws DatabaseException {
+		int created;
+		try (Connection conn = DriverManager.getConnection(DatabaseUtility.getUrl());) {
+			conn.setAutoCommit(false);
+			try {
+				created = createIndexes(conn);
+				conn.commit();
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			throw new DatabaseException("Unable to create the schema indexes", e);
+		}
+		System.out.println(created + " schema indexes have been successfully created");
+		return created;
+	}
+
+	/**
+	 * creates the missing indexes using the given connection, without committing
+	 * (e.g as a step of a schema migration). an index which already exists but was
+	 * not recorded (e.g created manually) is recorded without being re-created.
+	 */
+	static int createIndexes(Connection conn) throws SQLException {
+		int created = 0;
+		createVersionTable(conn);
+		Map<String, Integer> versions = readVersions(conn);
+		for (IndexDefinition index : INDEXES) {
+			Integer version = versions.get(index.name);
+			boolean exists = indexExists(conn, index);
+			if (exists && (version == null || version == index.version)) {
+				if (version == null) {
+					recordVersion(conn, index, false);
+				}
+				continue;
+			}
+			try (Statement stmt = conn.createStatement();) {
+				if (exists) {
+					stmt.executeUpdate("DROP INDEX " + index.name);
+				}
+				String sql = index.toSql();
+				stmt.executeUpdate(sql);
+				recordVersion(conn, index, version != null);
+				System.out.println(sql);
+				created++;
+			}
+		}
+		return created;
+	}
+
+	/**
+	 * reports for each index: whether it exists, its recorded version and whether
+	 * the optimizer uses it for the query it was created for (the plan is taken
+	 * from Derby's runtime statistics, it depends on the table's current size and
+	 * statistics).
+	 */
+	public static List<IndexStatus> reportIndexes() throws DatabaseException {
+		List<IndexStatus> report = new ArrayList<>();
+		try (Connection conn = DriverManager.getConnection(DatabaseUtility.getUrl());
+				Statement stmt = conn.createStatement();) {
+			createVersionTable(conn);
+			Map<String, Integer> versions = readVersions(conn);
+			stmt.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)");
+			for (IndexDefinition index : INDEXES) {
+				boolean exists = indexExists(conn, index);
+				boolean used = false;
+				if (exists) {
+					try (ResultSet rs = stmt.executeQuery(index.hotQuery);) {
+						while (rs.next()) {
+							// the plan is available once the query is fully read
+						}
+					}
+					try (ResultSet rs = stmt.executeQuery("VALUES SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()");) {
+						used = rs.next() && rs.getString(1).contains(index.name);
+					}
+				}
+				Integer version = versions.get(index.name);
+				report.add(new IndexStatus(index.name, index.table, index.columns, version == null ? 0 : version,
+						exists, used));
+			}
+			stmt.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(0)");
+		} catch (SQLException e) {
+			throw new DatabaseException("Unable to report the schema indexes", e);
+		}
+		return report;
+	}
+
+	/**
+	 * creates the indexes versions table if it doesn't exist.
+	 */
+	private static void createVersionTable(Connection conn) throws SQLException {
+		DatabaseMetaData meta = conn.getMetaData();
+		try (ResultSet rs = meta.getTables(null, null, VERSION_TABLE.toUpperCase(), null);) {
+			if (rs.next()) {
+				return;
+			}
+		}
+		String sql = "CREATE TABLE " + VERSION_TABLE + "(";
+		sql += "NAME VARCHAR(128) PRIMARY KEY NOT NULL,";
+		sql += "VERSION INTEGER NOT NULL,";
+		sql += "DEFINITION VARCHAR(500) NOT NULL,";
+		sql += "CREATED TIMESTAMP NOT NULL";
+		sql += ")";
+		try (Statement stmt = conn.createStatement();) {
+			stmt.executeUpdate(sql);
+		}
+		System.out.println(sql);
+	}
+
+	private static Map<String, Integer> readVersions(Connection conn) throws SQLException {
+		Map<String, Integer> versions = new HashMap<>();
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT NAME, VERSION FROM " + VERSION_TABLE);) {
+			while (rs.next()) {
+				versions.put(rs.getString("NAME"), rs.getInt("VERSION"));
+			}
+		}
+		return versions;
+	}
+
+	private static void recordVersion(Connection conn, IndexDefinition index, boolean update) throws SQLException {
+		String sql = update ? "UPDATE " + VERSION_TABLE + " SET VERSION=?, DEFINITION=?, CREATED=? WHERE NAME=?"
+				: "INSERT INTO " + VERSION_TABLE + " (VERSION, DEFINITION, CREATED, NAME) VALUES (?,?,?,?)";
+		try (PreparedStatement pstmt = conn.prepareStatement(sql);) {
+			pstmt.setInt(1, index.version);
+			pstmt.setString(2, index.toSql());
+			pstmt.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+			pstmt.setString(4, index.name);
+			pstmt.executeUpdate();
+		}
+	}
+
+	private static boolean indexExists(Connection conn, IndexDefinition index) throws SQLException {
+		return indexExists(conn, index.name, index.table);
+	}
+
+	/**
+	 * returns true if the given index exists on the given table.
+	 */
+	static boolean indexExists(Connection conn, String name, String table) throws SQLException {
+		String sql = "SELECT c.CONGLOMERATENAME FROM SYS.SYSCONGLOMERATES c INNER JOIN SYS.SYSTABLES t"
+				+ " ON c.TABLEID=t.TABLEID WHERE c.ISINDEX=TRUE AND c.CONGLOMERATENAME=? AND t.TABLENAME=?";
+		try (PreparedStatement pstmt = conn.prepareStatement(sql);) {
+			pstmt.setString(1, name.toUpperCase());
+			pstmt.setString(2, table.toUpperCase());
+			try (ResultSet rs = pstmt.executeQuery();) {
+				return rs.next();
+			}
+		}
+	}
+
+	/**
+	 * a secondary index definition and the query it serves.
+	 */
+	private static class IndexDefinition {
+		final int version;
+		final String name;
+		final String table;
+		final String columns;
+		final String hotQuery;
+
+		IndexDefinition(int version, String name, String table, String columns, String hotQuery) {
+			this.version = version;
+			this.name = name;
+			this.table = table;
+			this.columns = columns;
+			this.hotQuery = hotQuery;
+		}
+
+		String toSql() {
+			return "CREATE INDEX " + name + " ON " + table + "(" + columns + ")";
+		}
+	}
+
+	/**
+	 * the status of a single index, as reported by reportIndexes().
+	 */
+	public static class IndexStatus {
+		private final String name;
+		private final String table;
+		private final String columns;
+		private final int version;
+		private final boolean exists;
+		private final boolean used;
+
+		IndexStatus(String name, String table, String columns, int version, boolean exists, boolean used) {
+			this.name = name;
+			this.table = table;
+			this.columns = columns;
+			this.version = version;
+			this.exists = exists;
+			this.used = used;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getTable() {
+			return table;
+		}
+
+		public String getColumns() {
+			return columns;
+		}
+
+		/**
+		 * Returns the recorded version of the index, or 0 if it was not created by
+		 * createIndexes().
+		 */
+		public int getVersion() {
+			return version;
+		}
+
+		public boolean isExists() {
+			return exists;
+		}
+
+		/**
+		 * Returns true if the optimizer used the index for the query it was created
+		 * for.
+		 */
+		public boolean isUsed() {
+			return used;
+		}
+
+		@Override
+		public String toString() {
+			return "IndexStatus [name=" + name + ", table=" + table + ", columns=" + columns + ", version=" + version
+					+ ", exists=" + exists + ", used=" + used + "]";
+		}
+	}
+}
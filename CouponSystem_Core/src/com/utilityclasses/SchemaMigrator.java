@@ -0,0 +1,508 @@
+package com.utilityclasses;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.exceptions.DatabaseException;
+
+/**
+ * this is a utility class that brings the coupon system schema up to date by
+ * applying versioned migrations, instead of dropping and re-creating the
+ * tables.
+ *
+ * Each migration has a version, a description and ordered steps. the applied
+ * versions are recorded in the "schema_version" table and migrate() applies
+ * only the pending migrations, in version order, each one in its own
+ * transaction (a failed migration is rolled back and stops the run), so it can
+ * be run on every start.
+ *
+ * The steps are written to be online friendly and re-runnable: a table or an
+ * index is created only if missing and a column is added (with a default
+ * value, so existing rows stay valid) only if missing.
+ *
+ * Additional migrations can be placed as SQL scripts in "files/migrations"
+ * (the directory can be overridden using the "coupon.schema.migrations" system
+ * property) named V<version>__<description>.sql, e.g
+ * "V3__add_coupon_views.sql". the statements of a script are separated by ';'.
+ *
+ * @author SegevSinay
+ */
+public class SchemaMigrator {
+
+	public final static String VERSION_TABLE = "schema_version";
+	public final static String SCRIPTS_PROPERTY = "coupon.schema.migrations";
+
+	private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+	private static final Migration[] MIGRATIONS = {
+			new Migration(1, "initial tables",
+					createTable("companies", DatabaseUtility.companiesTableSql()),
+					createTable("customers", DatabaseUtility.customersTableSql()),
+					createTable("coupons", DatabaseUtility.couponsTableSql()),
+					createTable("customer_coupon", DatabaseUtility.customerCouponTableSql()),
+					createTable("company_coupon", DatabaseUtility.companyCouponTableSql())),
+			new Migration(2, "secondary indexes", new Step() {
+
+				@Override
+				public void apply(Connection conn) throws SQLException {
+					SchemaIndexes.createIndexes(conn);
+				}
+
+				@Override
+				public String toString() {
+					return "SchemaIndexes.createIndexes()";
+				}
+			}),
+			new Migration(3, "password hashes",
+					addColumn("companies", "PASSWORD_HASH", "VARCHAR(100)"),
+					addColumn("customers", "PASSWORD_HASH", "VARCHAR(100)"),
+					hashPasswords("companies"),
+					hashPasswords("customers"),
+					addIndex("COMPANIES_LOGIN_IDX", "companies", "COMP_NAME, ID, PASSWORD_HASH"),
+					addIndex("CUSTOMERS_LOGIN_IDX", "customers", "CUST_NAME, ID, PASSWORD_HASH")),
+			// COUPONS_TYPE_PRICE_IDX (TYPE, PRICE) serves the lookups by type as well
+			new Migration(4, "drop redundant coupon type index", dropIndex("COUPONS_TYPE_IDX", "coupons")),
+			// the passwords were hashed by V3, only the hashes are kept
+			new Migration(5, "drop plain passwords",
+					dropColumn("companies", "PASSWORD"),
+					dropColumn("customers", "PASSWORD")) };
+
+	/**
+	 * applies the pending migrations to the database. returns the number of
+	 * migrations applied.
+	 */
+	public static int migrate() throws DatabaseException {
+		try (Connection conn = DriverManager.getConnection(DatabaseUtility.getUrl());) {
+			return migrate(conn);
+		} catch (SQLException e) {
+			throw new DatabaseException("Unable to connect to the database", e);
+		}
+	}
+
+	/**
+	 * applies the pending migrations using the given connection (e.g a pooled
+	 * connection). returns the number of migrations applied.
+	 */
+	public static int migrate(Connection conn) throws DatabaseException {
+		List<Migration> migrations = getMigrations();
+		int applied = 0;
+		boolean autoCommit = true;
+		try {
+			autoCommit = conn.getAutoCommit();
+			createVersionTable(conn);
+			Set<Integer> versions = readVersions(conn);
+			conn.setAutoCommit(false);
+			for (Migration migration : migrations) {
+				if (versions.contains(migration.version)) {
+					continue;
+				}
+				apply(conn, migration);
+				applied++;
+			}
+		} catch (SQLException e) {
+			throw new DatabaseException("Unable to read the schema version", e);
+		} finally {
+			try {
+				conn.setAutoCommit(autoCommit);
+			} catch (SQLException e) {
+				// the connection is closed or broken, nothing to restore
+			}
+		}
+		System.out.println(applied + " schema migrations have been successfully applied");
+		return applied;
+	}
+
+	/**
+	 * returns the highest applied migration version, or 0 if no migration was
+	 * applied.
+	 */
+	public static int getCurrentVersion() throws DatabaseException {
+		try (Connection conn = DriverManager.getConnection(DatabaseUtility.getUrl());) {
+			createVersionTable(conn);
+			return getCurrentVersion(conn);
+		} catch (SQLException e) {
+			throw new DatabaseException("Unable to read the schema version", e);
+		}
+	}
+
+	/**
+	 * returns the highest applied migration version using the given connection
+	 * (e.g a pooled connection), or 0 if no migration was applied. the schema is
+	 * not changed (the version table is not created).
+	 */
+	public static int getCurrentVersion(Connection conn) throws DatabaseException {
+		try {
+			if (!tableExists(conn, VERSION_TABLE)) {
+				return 0;
+			}
+			Set<Integer> versions = readVersions(conn);
+			return versions.isEmpty() ? 0 : Collections.max(versions);
+		} catch (SQLException e) {
+			throw new DatabaseException("Unable to read the schema version", e);
+		}
+	}
+
+	/**
+	 * returns the version of the latest built-in migration: the schema version
+	 * the DAO's are written for (e.g the login queries use the indexes of V3).
+	 */
+	public static int getLatestVersion() {
+		return MIGRATIONS[MIGRATIONS.length - 1].version;
+	}
+
+	/**
+	 * returns the built-in migrations together with the migration scripts, sorted
+	 * by version.
+	 */
+	static List<Migration> getMigrations() throws DatabaseException {
+		List<Migration> migrations = new ArrayList<>(Arrays.asList(MIGRATIONS));
+		Set<Integer> versions = new HashSet<>();
+		for (Migration migration : MIGRATIONS) {
+			versions.add(migration.version);
+		}
+		for (Migration script : readScripts()) {
+			if (!versions.add(script.version)) {
+				throw new DatabaseException("Duplicate schema migration version " + script.version);
+			}
+			migrations.add(script);
+		}
+		migrations.sort((m1, m2) -> Integer.compare(m1.version, m2.version));
+		return migrations;
+	}
+
+	/**
+	 * applies the steps of a single migration and records its version in one
+	 * transaction.
+	 */
+	private static void apply(Connection conn, Migration migration) throws DatabaseException {
+		long start = System.currentTimeMillis();
+		try {
+			for (Step step : migration.steps) {
+				step.apply(conn);
+			}
+			String sql = "INSERT INTO " + VERSION_TABLE
+					+ " (VERSION, DESCRIPTION, APPLIED, DURATION_MS) VALUES (?,?,?,?)";
+			try (PreparedStatement pstmt = conn.prepareStatement(sql);) {
+				pstmt.setInt(1, migration.version);
+				pstmt.setString(2, migration.description);
+				pstmt.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+				pstmt.setLong(4, System.currentTimeMillis() - start);
+				pstmt.executeUpdate();
+			}
+			conn.commit();
+			System.out.println("Schema migration V" + migration.version + " (" + migration.description
+					+ ") has been successfully applied");
+		} catch (SQLException e) {
+			try {
+				conn.rollback();
+			} catch (SQLException e1) {
+				// the migration is reported as failed anyway
+			}
+			throw new DatabaseException(
+					"Unable to apply schema migration V" + migration.version + " (" + migration.description + ")", e);
+		}
+	}
+
+	/**
+	 * creates the schema version table if it doesn't exist.
+	 */
+	private static void createVersionTable(Connection conn) throws SQLException {
+		if (tableExists(conn, VERSION_TABLE)) {
+			return;
+		}
+		String sql = "CREATE TABLE " + VERSION_TABLE + "(";
+		sql += "VERSION INTEGER PRIMARY KEY NOT NULL,";
+		sql += "DESCRIPTION VARCHAR(200) NOT NULL,";
+		sql += "APPLIED TIMESTAMP NOT NULL,";
+		sql += "DURATION_MS BIGINT NOT NULL";
+		sql += ")";
+		try (Statement stmt = conn.createStatement();) {
+			stmt.executeUpdate(sql);
+		}
+		System.out.println(sql);
+	}
+
+	private static Set<Integer> readVersions(Connection conn) throws SQLException {
+		Set<Integer> versions = new HashSet<>();
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT VERSION FROM " + VERSION_TABLE);) {
+			while (rs.next()) {
+				versions.add(rs.getInt("VERSION"));
+			}
+		}
+		return versions;
+	}
+
+	/**
+	 * reads the migration scripts from the migrations directory (if it exists).
+	 */
+	private static List<Migration> readScripts() throws DatabaseException {
+		List<Migration> scripts = new ArrayList<>();
+		File directory = new File(System.getProperty(SCRIPTS_PROPERTY, "files/migrations"));
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return scripts;
+		}
+		for (File file : files) {
+			Matcher matcher = SCRIPT_NAME.matcher(file.getName());
+			if (!matcher.matches()) {
+				continue;
+			}
+			String script;
+			try {
+				script = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				throw new DatabaseException("Unable to read schema migration script " + file.getName(), e);
+			}
+			List<Step> steps = new ArrayList<>();
+			for (String statement : script.split(";")) {
+				if (!statement.trim().isEmpty()) {
+					steps.add(sql(statement.trim()));
+				}
+			}
+			scripts.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '),
+					steps.toArray(new Step[steps.size()])));
+		}
+		return scripts;
+	}
+
+	private static boolean tableExists(Connection conn, String table) throws SQLException {
+		DatabaseMetaData meta = conn.getMetaData();
+		try (ResultSet rs = meta.getTables(null, null, table.toUpperCase(), null);) {
+			return rs.next();
+		}
+	}
+
+	private static boolean columnExists(Connection conn, String table, String column) throws SQLException {
+		DatabaseMetaData meta = conn.getMetaData();
+		try (ResultSet rs = meta.getColumns(null, null, table.toUpperCase(), column.toUpperCase());) {
+			return rs.next();
+		}
+	}
+
+	private static void execute(Connection conn, String sql) throws SQLException {
+		try (Statement stmt = conn.createStatement();) {
+			stmt.executeUpdate(sql);
+		}
+		System.out.println(sql);
+	}
+
+	/**
+	 * a step which executes the given statement.
+	 */
+	public static Step sql(String sql) {
+		return new Step() {
+
+			@Override
+			public void apply(Connection conn) throws SQLException {
+				execute(conn, sql);
+			}
+
+			@Override
+			public String toString() {
+				return sql;
+			}
+		};
+	}
+
+	/**
+	 * a step which creates a table using the given DDL, if the table doesn't
+	 * exist.
+	 */
+	public static Step createTable(String table, String ddl) {
+		return new Step() {
+
+			@Override
+			public void apply(Connection conn) throws SQLException {
+				if (!tableExists(conn, table)) {
+					execute(conn, ddl);
+				}
+			}
+
+			@Override
+			public String toString() {
+				return ddl;
+			}
+		};
+	}
+
+	/**
+	 * a step which creates an index on the given columns, if the index doesn't
+	 * exist.
+	 */
+	public static Step addIndex(String name, String table, String columns) {
+		String ddl = "CREATE INDEX " + name + " ON " + table + "(" + columns + ")";
+		return new Step() {
+
+			@Override
+			public void apply(Connection conn) throws SQLException {
+				if (!SchemaIndexes.indexExists(conn, name, table)) {
+					execute(conn, ddl);
+				}
+			}
+
+			@Override
+			public String toString() {
+				return ddl;
+			}
+		};
+	}
+
+	/**
+	 * a step which drops an index, if the index exists.
+	 */
+	public static Step dropIndex(String name, String table) {
+		String ddl = "DROP INDEX " + name;
+		return new Step() {
+
+			@Override
+			public void apply(Connection conn) throws SQLException {
+				if (SchemaIndexes.indexExists(conn, name, table)) {
+					execute(conn, ddl);
+				}
+			}
+
+			@Override
+			public String toString() {
+				return ddl;
+			}
+		};
+	}
+
+	/**
+	 * a step which adds a column, if the column doesn't exist. the definition
+	 * should include a default value when the column is NOT NULL (e.g "INTEGER
+	 * DEFAULT 0 NOT NULL"), so the existing rows get the default value.
+	 */
+	public static Step addColumn(String table, String column, String definition) {
+		String ddl = "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition;
+		return new Step() {
+
+			@Override
+			public void apply(Connection conn) throws SQLException {
+				if (!columnExists(conn, table, column)) {
+					execute(conn, ddl);
+				}
+			}
+
+			@Override
+			public String toString() {
+				return ddl;
+			}
+		};
+	}
+
+	/**
+	 * a step which drops a column, if the column exists.
+	 */
+	public static Step dropColumn(String table, String column) {
+		String ddl = "ALTER TABLE " + table + " DROP COLUMN " + column;
+		return new Step() {
+
+			@Override
+			public void apply(Connection conn) throws SQLException {
+				if (columnExists(conn, table, column)) {
+					execute(conn, ddl);
+				}
+			}
+
+			@Override
+			public String toString() {
+				return ddl;
+			}
+		};
+	}
+
+	/**
+	 * a step which sets the password hash (see PasswordHasher) of the table's
+	 * records which don't have one yet (nothing to hash once the plain passwords
+	 * were dropped by V5).
+	 */
+	private static Step hashPasswords(String table) {
+		String select = "SELECT ID, PASSWORD FROM " + table + " WHERE PASSWORD_HASH IS NULL";
+		String update = "UPDATE " + table + " SET PASSWORD_HASH=? WHERE ID=?";
+		return new Step() {
+
+			@Override
+			public void apply(Connection conn) throws SQLException {
+				if (!columnExists(conn, table, "PASSWORD")) {
+					return;
+				}
+				int hashed = 0;
+				try (Statement stmt = conn.createStatement();
+						ResultSet rs = stmt.executeQuery(select);
+						PreparedStatement pstmt = conn.prepareStatement(update);) {
+					while (rs.next()) {
+						pstmt.setString(1, PasswordHasher.hash(rs.getString("PASSWORD")));
+						pstmt.setLong(2, rs.getLong("ID"));
+						pstmt.addBatch();
+						hashed++;
+					}
+					if (hashed > 0) {
+						pstmt.executeBatch();
+					}
+				}
+				System.out.println(update + " (" + hashed + " records)");
+			}
+
+			@Override
+			public String toString() {
+				return update;
+			}
+		};
+	}
+
+	/**
+	 * a single migration step.
+	 */
+	public interface Step {
+		void apply(Connection conn) throws SQLException;
+	}
+
+	/**
+	 * a versioned migration: a description and the steps which are applied in one
+	 * transaction.
+	 */
+	public static class Migration {
+		private final int version;
+		private final String description;
+		private final Step[] steps;
+
+		public Migration(int version, String description, Step... steps) {
+			this.version = version;
+			this.description = description;
+			this.steps = steps;
+		}
+
+		public int getVersion() {
+			return version;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		@Override
+		public String toString() {
+			return "Migration [version=" + version + ", description=" + description + ", steps=" + steps.length + "]";
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.testsupport;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import com.exceptions.DatabaseException;
+import com.utilityclasses.DatabaseUtility;
+
+/**
+ * Spins up the coupon system database in-process, using the embedded Derby
+ * driver and an in-memory database, so load tests and benchmarks run on any box
+ * without a standalone Derby network server.
+ *
+ * NOTE: start() must be called before the DatabaseUtility and ConnectionPool
+ * classes are used (they read their settings once).
+ *
+ * @author SegevSinay
+ */
+public class EmbeddedDatabase {
+
+	public static final String EMBEDDED_DRIVER = "org.apache.derby.jdbc.EmbeddedDriver";
+
+	/**
+	 * points DatabaseUtility and the ConnectionPool at the in-memory database with
+	 * the given name and creates all tables using DatabaseUtility.
+	 */
+	public static void start(String dbName) throws DatabaseException {
+		String url = "jdbc:derby:memory:" + dbName;
+		System.setProperty(DatabaseUtility.DRIVER_PROPERTY, EMBEDDED_DRIVER);
+		System.setProperty(DatabaseUtility.URL_PROPERTY, url);
+		System.setProperty("coupon.pool.url", url + ";create=true");
+		DatabaseUtility.resetAllDBTables();
+	}
+
+	/**
+	 * drops the in-memory database with the given name.
+	 */
+	public static void stop(String dbName) throws DatabaseException {
+		try {
+			DriverManager.getConnection("jdbc:derby:memory:" + dbName + ";drop=true");
+		} catch (SQLException e) {
+			if (!"08006".equals(e.getSQLState())) { // 08006 = database dropped successfully
+				throw new DatabaseException("Unable to drop database '" + dbName + "'", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.connectionpool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.exceptions.ConnectionPoolException;
+
+/**
+ * Tests the validation of the connection pool settings.
+ *
+ * @author SegevSinay
+ */
+public class PoolConfigTest {
+
+	@Test
+	public void defaultsAreValid() throws Exception {
+		new PoolConfig().validate();
+	}
+
+	@Test
+	public void rejectsOutOfRangeSettings() {
+		PoolConfig config = new PoolConfig();
+		config.setMinIdle(11);
+		config.setMaxSize(10);
+		assertInvalid(config, PoolConfig.MIN_IDLE);
+
+		config = new PoolConfig();
+		config.setMaxSize(0);
+		assertInvalid(config, PoolConfig.MAX_SIZE);
+
+		config = new PoolConfig();
+		config.setAcquireTimeout(0);
+		assertInvalid(config, PoolConfig.ACQUIRE_TIMEOUT);
+
+		config = new PoolConfig();
+		config.setEngine("fast");
+		assertInvalid(config, PoolConfig.ENGINE);
+	}
+
+	@Test
+	public void rejectsMalformedSetting() {
+		System.setProperty(PoolConfig.MAX_SIZE, "ten");
+		try {
+			ConnectionPoolException e = assertThrows(ConnectionPoolException.class, PoolConfig::load);
+			assertTrue(e.getMessage().contains(PoolConfig.MAX_SIZE + "=ten"), e.getMessage());
+		} finally {
+			System.clearProperty(PoolConfig.MAX_SIZE);
+		}
+	}
+
+	@Test
+	public void loadsSystemProperty() throws Exception {
+		System.setProperty(PoolConfig.MAX_SIZE, " 7 ");
+		try {
+			assertEquals(7, PoolConfig.load().getMaxSize());
+		} finally {
+			System.clearProperty(PoolConfig.MAX_SIZE);
+		}
+	}
+
+	private static void assertInvalid(PoolConfig config, String key) {
+		ConnectionPoolException e = assertThrows(ConnectionPoolException.class, config::validate);
+		assertTrue(e.getMessage().contains(key), e.getMessage());
+	}
+}
@@ -0,0 +1,151 @@
+package com.connectionpool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.exceptions.ConnectionPoolException;
+import com.testsupport.EmbeddedDatabase;
+
+/**
+ * Tests the pool engines against an in-memory Derby database of their own: the
+ * acquire timeout, the maximum pool size under concurrent borrowers and the
+ * eviction of dead connections.
+ *
+ * @author SegevSinay
+ */
+public class PoolEngineTest {
+
+	private static final String DB_NAME = "pool_engine_db";
+
+	private final AtomicInteger created = new AtomicInteger();
+	private PoolEngine engine;
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		if (engine != null) {
+			engine.closeAllConnection();
+		}
+		EmbeddedDatabase.stop(DB_NAME);
+	}
+
+	private ConnectionFactory factory() {
+		return () -> {
+			created.incrementAndGet();
+			return DriverManager.getConnection("jdbc:derby:memory:" + DB_NAME + ";create=true");
+		};
+	}
+
+	private static PoolConfig config(int minIdle, int maxSize) {
+		PoolConfig config = new PoolConfig();
+		config.setMinIdle(minIdle);
+		config.setMaxSize(maxSize);
+		config.setValidationWindow(0); // validate every idle connection upon getConnection()
+		return config;
+	}
+
+	@Test
+	public void concurrentEngineTimesOutWhenEmpty() throws Exception {
+		engine = new ConcurrentPoolEngine(factory(), config(0, 2));
+		Connection first = engine.getConnection(1, TimeUnit.SECONDS);
+		Connection second = engine.getConnection(1, TimeUnit.SECONDS);
+		long start = System.nanoTime();
+		assertThrows(ConnectionPoolException.class, () -> engine.getConnection(200, TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+		engine.returnConnection(first);
+		assertEquals(first, engine.getConnection(1, TimeUnit.SECONDS));
+		engine.returnConnection(first);
+		engine.returnConnection(second);
+	}
+
+	@Test
+	public void legacyEngineTimesOutWhenEmpty() throws Exception {
+		engine = new LegacyPoolEngine(factory(), config(0, 1));
+		Connection conn = engine.getConnection(1, TimeUnit.SECONDS);
+		assertThrows(ConnectionPoolException.class, () -> engine.getConnection(200, TimeUnit.MILLISECONDS));
+		engine.returnConnection(conn);
+	}
+
+	@Test
+	public void concurrentEngineNeverExceedsMaxSize() throws Exception {
+		int maxSize = 4;
+		engine = new ConcurrentPoolEngine(factory(), config(0, maxSize));
+		AtomicInteger borrowed = new AtomicInteger();
+		AtomicInteger maxBorrowed = new AtomicInteger();
+		ExecutorService threads = Executors.newFixedThreadPool(16);
+		try {
+			List<Callable<Void>> borrowers = new ArrayList<>();
+			for (int n = 0; n < 16; n++) {
+				borrowers.add(() -> {
+					for (int i = 0; i < 50; i++) {
+						Connection conn = engine.getConnection(10, TimeUnit.SECONDS);
+						try {
+							maxBorrowed.accumulateAndGet(borrowed.incrementAndGet(), Math::max);
+							Thread.yield();
+						} finally {
+							borrowed.decrementAndGet();
+							engine.returnConnection(conn);
+						}
+					}
+					return null;
+				});
+			}
+			for (Future<Void> borrower : threads.invokeAll(borrowers)) {
+				borrower.get(); // rethrows a borrower's failure
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+		assertTrue(maxBorrowed.get() <= maxSize, "borrowed at once: " + maxBorrowed.get());
+		assertTrue(created.get() <= maxSize, "connections opened: " + created.get());
+		assertEquals(created.get(), engine.getOpenConnections());
+		assertEquals(0, engine.getEvictedConnections());
+	}
+
+	@Test
+	public void concurrentEngineEvictsClosedConnection() throws Exception {
+		engine = new ConcurrentPoolEngine(factory(), config(0, 2));
+		Connection conn = engine.getConnection(1, TimeUnit.SECONDS);
+		conn.close();
+		engine.returnConnection(conn);
+		assertEquals(1, engine.getEvictedConnections());
+		assertEquals(0, engine.getOpenConnections());
+		Connection replacement = engine.getConnection(1, TimeUnit.SECONDS);
+		assertNotSame(conn, replacement);
+		assertTrue(replacement.isValid(1));
+		engine.returnConnection(replacement);
+	}
+
+	@Test
+	public void concurrentEngineEvictsDeadIdleConnections() throws Exception {
+		engine = new ConcurrentPoolEngine(factory(), config(0, 3));
+		Connection[] conns = new Connection[3];
+		for (int i = 0; i < conns.length; i++) {
+			conns[i] = engine.getConnection(1, TimeUnit.SECONDS);
+		}
+		for (Connection conn : conns) {
+			engine.returnConnection(conn);
+		}
+		EmbeddedDatabase.stop(DB_NAME); // every idle connection is dead now
+		Connection conn = engine.getConnection(1, TimeUnit.SECONDS);
+		assertEquals(3, engine.getEvictedConnections());
+		assertEquals(1, engine.getOpenConnections());
+		assertTrue(conn.isValid(1));
+		engine.returnConnection(conn);
+	}
+}
@@ -0,0 +1,132 @@
+package com.dbdao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.beans.Coupon;
+import com.beans.Customer;
+import com.beans.PurchaseResult;
+import com.dao.CouponDAO;
+import com.dao.CustomerDAO;
+import com.exceptions.ConnectionPoolException;
+import com.exceptions.DatabaseException;
+import com.facade.CustomerFacade;
+import com.main.DAORegistry;
+import com.testsupport.CouponFixtures;
+import com.testsupport.EmbeddedDatabase;
+
+/**
+ * Tests that the CachingCouponDAO never serves a coupon which was changed: by
+ * the DAO itself, by a purchase (which changes the amount without the DAO) or
+ * while the coupon was being read from the database.
+ *
+ * @author SegevSinay
+ */
+public class CachingCouponDAOTest {
+
+	private static CustomerDAO custDao;
+	private static CouponDAO coupDao;
+	private CachingCouponDAO cache;
+
+	@BeforeAll
+	public static void setUp() throws Exception {
+		EmbeddedDatabase.start("coupon_sys_db");
+		custDao = DAORegistry.getInstance().getCustomerDao();
+		coupDao = DAORegistry.getInstance().getCouponDao();
+	}
+
+	@BeforeEach
+	public void createCache() {
+		cache = new CachingCouponDAO(coupDao, 100, 60 * 1000);
+	}
+
+	private Coupon createCoupon(String prefix, int amount) throws Exception {
+		Coupon coupon = CouponFixtures.coupon(CouponFixtures.unique(prefix), amount, 30);
+		cache.createCoupon(coupon);
+		return coupon;
+	}
+
+	@Test
+	public void servesCachedCoupon() throws Exception {
+		Coupon coupon = createCoupon("cached", 5);
+		cache.getCoupon(coupon.getId());
+		cache.getCouponByTitle(coupon.getTitle());
+		cache.getCoupon(coupon.getId());
+		assertEquals(2, cache.getStats().getHits());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void updateInvalidatesCoupon() throws Exception {
+		Coupon coupon = createCoupon("updated", 5);
+		cache.getCoupon(coupon.getId());
+		coupon.setPrice(20);
+		cache.updateCoupon(coupon);
+		assertEquals(20, cache.getCoupon(coupon.getId()).getPrice());
+		assertEquals(20, cache.getCouponByTitle(coupon.getTitle()).getPrice());
+	}
+
+	@Test
+	public void purchaseInvalidatesCoupon() throws Exception {
+		Coupon coupon = createCoupon("bought", 5);
+		assertEquals(5, cache.getCouponByTitle(coupon.getTitle()).getAmount());
+		Customer customer = new Customer(CouponFixtures.unique("cacher"), "pass1234");
+		custDao.createCustomer(customer);
+		CustomerFacade facade = new CustomerFacade(customer, custDao, cache);
+		assertEquals(PurchaseResult.PURCHASED, facade.tryPurchaseCoupon(new Coupon(coupon.getTitle())));
+		assertEquals(4, cache.getCouponByTitle(coupon.getTitle()).getAmount());
+		assertEquals(4, cache.getCoupon(coupon.getId()).getAmount());
+	}
+
+	@Test
+	public void couponChangedWhileLoadingIsNotCached() throws Exception {
+		Coupon coupon = createCoupon("loading", 5);
+		CountDownLatch loaded = new CountDownLatch(1);
+		CountDownLatch updated = new CountDownLatch(1);
+		// reads the coupon and waits for the update before the cache gets it
+		CouponDAO slowDao = new CouponDBDAO() {
+			@Override
+			public Coupon getCoupon(long id) throws DatabaseException, ConnectionPoolException {
+				Coupon read = super.getCoupon(id);
+				loaded.countDown();
+				try {
+					updated.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return read;
+			}
+		};
+		CachingCouponDAO slowCache = new CachingCouponDAO(slowDao, 100, 60 * 1000);
+		CompletableFuture<Coupon> stale = CompletableFuture.supplyAsync(() -> {
+			try {
+				return slowCache.getCoupon(coupon.getId());
+			} catch (DatabaseException | ConnectionPoolException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		assertTrue(loaded.await(10, TimeUnit.SECONDS));
+		coupon.setAmount(1);
+		slowCache.updateCoupon(coupon);
+		updated.countDown();
+		assertEquals(5, stale.get(10, TimeUnit.SECONDS).getAmount()); // read before the update
+		assertEquals(0, slowCache.size());
+	}
+
+	@Test
+	public void expirationRunInvalidatesAll() throws Exception {
+		Coupon coupon = createCoupon("expiring", 5);
+		cache.getCoupon(coupon.getId());
+		assertEquals(1, cache.size());
+		cache.removeExpiredCoupons(100);
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,114 @@
+package com.dbdao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.beans.Coupon;
+import com.beans.Page;
+import com.dao.CouponDAO;
+import com.main.DAORegistry;
+import com.testsupport.CouponFixtures;
+import com.testsupport.EmbeddedDatabase;
+
+/**
+ * Tests the keyset pagination of the coupons (see CouponDAO.getCouponsPage()):
+ * every coupon is returned once, in ID order, also while coupons are created
+ * and removed between the pages.
+ *
+ * @author SegevSinay
+ */
+public class CouponDBDAOTest {
+
+	private static CouponDAO coupDao;
+
+	@BeforeAll
+	public static void setUp() throws Exception {
+		EmbeddedDatabase.start("coupon_sys_db");
+		coupDao = DAORegistry.getInstance().getCouponDao();
+	}
+
+	@Test
+	public void pagesReturnEveryCouponOnce() throws Exception {
+		List<Coupon> created = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			Coupon coupon = CouponFixtures.coupon(CouponFixtures.unique("page"), 1, 30);
+			coupDao.createCoupon(coupon);
+			created.add(coupon);
+		}
+		Set<Long> ids = readAllPages(7, null);
+		for (Coupon coupon : created) {
+			assertTrue(ids.contains(coupon.getId()), coupon.getTitle() + " is missing");
+		}
+		assertEquals(coupDao.getAllCoupons().size(), ids.size());
+	}
+
+	@Test
+	public void pagesAreStableWhileCouponsChange() throws Exception {
+		List<Coupon> created = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Coupon coupon = CouponFixtures.coupon(CouponFixtures.unique("keyset"), 1, 30);
+			coupDao.createCoupon(coupon);
+			created.add(coupon);
+		}
+		Coupon removed = created.get(created.size() - 1);
+		List<Coupon> added = new ArrayList<>();
+		Set<Long> ids = readAllPages(5, () -> {
+			// a coupon removed ahead of the cursor and a coupon added after it
+			if (added.isEmpty()) {
+				coupDao.removeCoupon(removed);
+				Coupon coupon = CouponFixtures.coupon(CouponFixtures.unique("late"), 1, 30);
+				coupDao.createCoupon(coupon);
+				added.add(coupon);
+			}
+		});
+		for (Coupon coupon : created.subList(0, created.size() - 1)) {
+			assertTrue(ids.contains(coupon.getId()), coupon.getTitle() + " is missing");
+		}
+		assertFalse(ids.contains(removed.getId()));
+		assertTrue(ids.contains(added.get(0).getId()));
+	}
+
+	@Test
+	public void lastPageHasNoNext() throws Exception {
+		Page<Coupon> page = coupDao.getCouponsPage(Long.MAX_VALUE - 1, 10);
+		assertTrue(page.getItems().isEmpty());
+		assertFalse(page.hasNext());
+	}
+
+	/**
+	 * reads all the coupon pages of the given size, checks that the IDs ascend
+	 * and returns them. the given action (if any) runs between the pages.
+	 */
+	private static Set<Long> readAllPages(int limit, Action betweenPages) throws Exception {
+		Set<Long> ids = new LinkedHashSet<>();
+		long cursor = 0;
+		Page<Coupon> page;
+		do {
+			page = coupDao.getCouponsPage(cursor, limit);
+			assertTrue(page.getItems().size() <= limit);
+			for (Coupon coupon : page.getItems()) {
+				assertTrue(coupon.getId() > cursor, "page is not ordered by ID");
+				assertTrue(ids.add(coupon.getId()), "coupon " + coupon.getId() + " was returned twice");
+				cursor = coupon.getId();
+			}
+			assertEquals(cursor, page.getNextCursor());
+			if (betweenPages != null) {
+				betweenPages.run();
+			}
+		} while (page.hasNext());
+		return ids;
+	}
+
+	private interface Action {
+		void run() throws Exception;
+	}
+}
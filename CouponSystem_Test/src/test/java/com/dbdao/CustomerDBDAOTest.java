@@ -0,0 +1,110 @@
+package com.dbdao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.beans.Coupon;
+import com.beans.Customer;
+import com.beans.PurchaseResult;
+import com.dao.CouponDAO;
+import com.dao.CustomerDAO;
+import com.main.DAORegistry;
+import com.testsupport.CouponFixtures;
+import com.testsupport.EmbeddedDatabase;
+
+/**
+ * Tests the coupon purchase transaction (see CustomerDBDAO.purchaseCoupon())
+ * against the embedded database: concurrent buyers of a coupon which is almost
+ * out of stock, a repeated purchase and an expired coupon.
+ *
+ * @author SegevSinay
+ */
+public class CustomerDBDAOTest {
+
+	private static CustomerDAO custDao;
+	private static CouponDAO coupDao;
+
+	@BeforeAll
+	public static void setUp() throws Exception {
+		EmbeddedDatabase.start("coupon_sys_db");
+		custDao = DAORegistry.getInstance().getCustomerDao();
+		coupDao = DAORegistry.getInstance().getCouponDao();
+	}
+
+	private static Customer createCustomer() throws Exception {
+		Customer customer = new Customer(CouponFixtures.unique("buyer"), "pass1234");
+		custDao.createCustomer(customer);
+		return customer;
+	}
+
+	@Test
+	public void concurrentBuyersDontOversell() throws Exception {
+		int amount = 5;
+		int buyers = 32;
+		Coupon coupon = CouponFixtures.coupon(CouponFixtures.unique("race"), amount, 30);
+		coupDao.createCoupon(coupon);
+		List<Customer> customers = new ArrayList<>();
+		for (int i = 0; i < buyers; i++) {
+			customers.add(createCustomer());
+		}
+
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService threads = Executors.newFixedThreadPool(buyers);
+		Map<PurchaseResult, Integer> results = new EnumMap<>(PurchaseResult.class);
+		try {
+			List<Future<PurchaseResult>> purchases = new ArrayList<>();
+			for (Customer customer : customers) {
+				Callable<PurchaseResult> purchase = () -> {
+					start.await();
+					// a coupon without its ID, as a client sends it, is looked up by its title
+					return custDao.purchaseCoupon(customer.getId(), new Coupon(coupon.getTitle()));
+				};
+				purchases.add(threads.submit(purchase));
+			}
+			start.countDown();
+			for (Future<PurchaseResult> purchase : purchases) {
+				results.merge(purchase.get(), 1, Integer::sum);
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+
+		assertEquals(amount, (int) results.getOrDefault(PurchaseResult.PURCHASED, 0), results.toString());
+		assertEquals(buyers - amount, (int) results.getOrDefault(PurchaseResult.OUT_OF_STOCK, 0), results.toString());
+		assertEquals(0, coupDao.getCoupon(coupon.getId()).getAmount());
+	}
+
+	@Test
+	public void repeatedPurchaseIsRejected() throws Exception {
+		Coupon coupon = CouponFixtures.coupon(CouponFixtures.unique("repeat"), 3, 30);
+		coupDao.createCoupon(coupon);
+		Customer customer = createCustomer();
+		assertEquals(PurchaseResult.PURCHASED, custDao.purchaseCoupon(customer.getId(), coupon));
+		assertEquals(PurchaseResult.ALREADY_PURCHASED, custDao.purchaseCoupon(customer.getId(), coupon));
+		assertEquals(2, coupDao.getCoupon(coupon.getId()).getAmount()); // the second purchase was rolled back
+		assertEquals(1, custDao.getCoupons(customer).size());
+	}
+
+	@Test
+	public void expiredOrMissingCouponIsNotPurchased() throws Exception {
+		Coupon coupon = CouponFixtures.coupon(CouponFixtures.unique("expired"), 3, -1);
+		coupDao.createCoupon(coupon);
+		Customer customer = createCustomer();
+		assertEquals(PurchaseResult.EXPIRED, custDao.purchaseCoupon(customer.getId(), coupon));
+		assertEquals(3, coupDao.getCoupon(coupon.getId()).getAmount());
+		assertEquals(PurchaseResult.NOT_FOUND,
+				custDao.purchaseCoupon(customer.getId(), new Coupon(CouponFixtures.unique("missing"))));
+	}
+}
@@ -0,0 +1,94 @@
+package com.facade;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.exceptions.CouponSystemException;
+
+/**
+ * Tests that the BoundedFacadeExecutor runs at most maxConcurrency operations
+ * at once without blocking the submitting thread, and that shutdown() waits
+ * for the submitted operations.
+ *
+ * @author SegevSinay
+ */
+public class BoundedFacadeExecutorTest {
+
+	@Test
+	public void runsUpToMaxConcurrency() throws Exception {
+		BoundedFacadeExecutor executor = new BoundedFacadeExecutor(4);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(4);
+		CountDownLatch release = new CountDownLatch(1);
+		List<CompletableFuture<Integer>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			int n = i;
+			futures.add(executor.submit(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				started.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+				return n;
+			}));
+		}
+		// all operations were submitted while the first ones are still blocked
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertEquals(4, executor.getActive());
+		assertEquals(100 - 4, executor.getWaiting());
+		release.countDown();
+		for (int i = 0; i < futures.size(); i++) {
+			assertEquals(i, (int) futures.get(i).get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(4, maxRunning.get());
+		executor.shutdown(10, TimeUnit.SECONDS); // the permits are released once the futures are completed
+		assertEquals(0, executor.getActive());
+	}
+
+	@Test
+	public void completesWithTheOperationFailure() throws Exception {
+		BoundedFacadeExecutor executor = new BoundedFacadeExecutor(2);
+		CompletableFuture<Object> future = executor.submit(() -> {
+			throw new CouponSystemException("failed");
+		});
+		ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof CouponSystemException);
+		executor.shutdown(10, TimeUnit.SECONDS);
+		assertEquals(0, executor.getActive());
+	}
+
+	@Test
+	public void shutdownWaitsAndRejectsNewOperations() throws Exception {
+		BoundedFacadeExecutor executor = new BoundedFacadeExecutor(2);
+		AtomicInteger completed = new AtomicInteger();
+		for (int i = 0; i < 10; i++) {
+			executor.submit(() -> {
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return completed.incrementAndGet();
+			});
+		}
+		executor.shutdown(10, TimeUnit.SECONDS);
+		assertEquals(10, completed.get());
+		CompletableFuture<Integer> late = executor.submit(() -> 1);
+		assertTrue(late.isCompletedExceptionally());
+	}
+}
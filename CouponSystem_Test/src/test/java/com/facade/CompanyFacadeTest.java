@@ -0,0 +1,85 @@
+package com.facade;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.beans.Company;
+import com.beans.Coupon;
+import com.beans.CouponImportResult;
+import com.dao.CompanyDAO;
+import com.dao.CouponDAO;
+import com.main.DAORegistry;
+import com.testsupport.CouponFixtures;
+import com.testsupport.EmbeddedDatabase;
+
+/**
+ * Tests the bulk coupon import (see CompanyFacade.createCoupons()): the invalid
+ * coupons are rejected with their position and reason, and only the valid
+ * coupons are created together with their company_coupon records.
+ *
+ * @author SegevSinay
+ */
+public class CompanyFacadeTest {
+
+	private static CompanyDAO compDao;
+	private static CouponDAO coupDao;
+	private static CompanyFacade facade;
+
+	@BeforeAll
+	public static void setUp() throws Exception {
+		EmbeddedDatabase.start("coupon_sys_db");
+		compDao = DAORegistry.getInstance().getCompanyDao();
+		coupDao = DAORegistry.getInstance().getCouponDao();
+		Company company = new Company(CouponFixtures.unique("importer"), "pass1234", "import@coupons.com");
+		compDao.createCompany(company);
+		facade = new CompanyFacade(company, compDao, coupDao);
+	}
+
+	@Test
+	public void rejectsInvalidCouponsAndCreatesTheRest() throws Exception {
+		Coupon existing = CouponFixtures.coupon(CouponFixtures.unique("existing"), 1, 30);
+		facade.createCoupon(existing);
+
+		Coupon valid = CouponFixtures.coupon(CouponFixtures.unique("valid"), 5, 30);
+		Coupon duplicate = CouponFixtures.coupon(valid.getTitle(), 5, 30);
+		Coupon negative = CouponFixtures.coupon(CouponFixtures.unique("negative"), -1, 30);
+		Coupon expired = CouponFixtures.coupon(CouponFixtures.unique("expired"), 5, -1);
+		Coupon longTitle = CouponFixtures.coupon("a title which is longer than thirty chars", 5, 30);
+		Coupon noType = CouponFixtures.coupon(CouponFixtures.unique("notype"), 5, 30);
+		noType.setType(null);
+		Coupon alreadyExists = CouponFixtures.coupon(existing.getTitle(), 5, 30);
+		Coupon another = CouponFixtures.coupon(CouponFixtures.unique("another"), 5, 30);
+
+		List<Coupon> coupons = Arrays.asList(valid, duplicate, negative, expired, longTitle, noType, alreadyExists,
+				another);
+		CouponImportResult result = facade.createCoupons(coupons);
+
+		assertEquals(new HashSet<>(Arrays.asList(1, 2, 3, 4, 5, 6)), result.getRejected().keySet(),
+				result.getRejected().toString());
+		assertEquals(Arrays.asList(valid, another), result.getCreated());
+		for (Coupon coupon : result.getCreated()) {
+			assertNotEquals(0, coupon.getId());
+		}
+		Set<String> titles = coupDao.getExistingTitles(Arrays.asList(valid.getTitle(), another.getTitle(),
+				negative.getTitle(), expired.getTitle(), noType.getTitle()));
+		assertEquals(new HashSet<>(Arrays.asList(valid.getTitle(), another.getTitle())), titles);
+		assertEquals(3, facade.getAllCoupons().size()); // the existing coupon and the imported ones
+	}
+
+	@Test
+	public void importsEmptyCollection() throws Exception {
+		CouponImportResult result = facade.createCoupons(Collections.<Coupon>emptyList());
+		assertTrue(result.isAllCreated());
+		assertTrue(result.getCreated().isEmpty());
+	}
+}
@@ -0,0 +1,99 @@
+package com.main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the LoginThrottle lets at most maxFailures attempts of a client
+ * through, also when the attempts arrive at once, and that a successful login
+ * clears the client's failures.
+ *
+ * @author SegevSinay
+ */
+public class LoginThrottleTest {
+
+	@Test
+	public void throttlesAfterMaxFailures() {
+		LoginThrottle throttle = new LoginThrottle(3, 60 * 1000);
+		for (int i = 0; i < 3; i++) {
+			assertTrue(throttle.tryAcquire(ClientType.CUSTOMER, "eve"));
+			throttle.failed(ClientType.CUSTOMER, "eve");
+		}
+		assertFalse(throttle.tryAcquire(ClientType.CUSTOMER, "eve"));
+		assertTrue(throttle.tryAcquire(ClientType.COMPANY, "eve")); // another client
+		assertEquals(3, throttle.getFailures());
+		assertEquals(1, throttle.getRejected());
+	}
+
+	@Test
+	public void pendingAttemptsCountAgainstTheLimit() {
+		LoginThrottle throttle = new LoginThrottle(2, 60 * 1000);
+		assertTrue(throttle.tryAcquire(ClientType.CUSTOMER, "bob"));
+		assertTrue(throttle.tryAcquire(ClientType.CUSTOMER, "bob"));
+		assertFalse(throttle.tryAcquire(ClientType.CUSTOMER, "bob")); // two attempts in flight
+		throttle.cancelled(ClientType.CUSTOMER, "bob");
+		assertTrue(throttle.tryAcquire(ClientType.CUSTOMER, "bob"));
+	}
+
+	@Test
+	public void successClearsFailures() {
+		LoginThrottle throttle = new LoginThrottle(2, 60 * 1000);
+		assertTrue(throttle.tryAcquire(ClientType.COMPANY, "acme"));
+		throttle.failed(ClientType.COMPANY, "acme");
+		assertTrue(throttle.tryAcquire(ClientType.COMPANY, "acme"));
+		throttle.succeeded(ClientType.COMPANY, "acme");
+		assertTrue(throttle.tryAcquire(ClientType.COMPANY, "acme"));
+		throttle.failed(ClientType.COMPANY, "acme");
+		assertTrue(throttle.tryAcquire(ClientType.COMPANY, "acme"));
+	}
+
+	@Test
+	public void concurrentBurstIsCapped() throws Exception {
+		int maxFailures = 5;
+		int attempts = 64;
+		LoginThrottle throttle = new LoginThrottle(maxFailures, 60 * 1000);
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService threads = Executors.newFixedThreadPool(attempts);
+		int passed = 0;
+		try {
+			List<Callable<Boolean>> guesses = new ArrayList<>();
+			for (int n = 0; n < attempts; n++) {
+				guesses.add(() -> {
+					start.await();
+					if (!throttle.tryAcquire(ClientType.CUSTOMER, "victim")) {
+						return false;
+					}
+					Thread.sleep(10); // the credentials check
+					throttle.failed(ClientType.CUSTOMER, "victim");
+					return true;
+				});
+			}
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (Callable<Boolean> guess : guesses) {
+				results.add(threads.submit(guess));
+			}
+			start.countDown();
+			for (Future<Boolean> result : results) {
+				if (result.get()) {
+					passed++;
+				}
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+		assertEquals(maxFailures, passed);
+		assertEquals(maxFailures, throttle.getFailures());
+		assertEquals(attempts - maxFailures, throttle.getRejected());
+	}
+}
@@ -0,0 +1,40 @@
+package com.testsupport;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.beans.Coupon;
+import com.beans.CouponType;
+
+/**
+ * Builds the beans the tests create. the tests share a single embedded database
+ * (the DAOs and the ConnectionPool read their settings once), so every test
+ * uses unique names.
+ *
+ * @author SegevSinay
+ */
+public class CouponFixtures {
+
+	private static final AtomicInteger sequence = new AtomicInteger();
+
+	/**
+	 * returns a coupon with the given title and amount which is valid for the
+	 * given number of days (a negative number of days returns an expired coupon).
+	 */
+	public static Coupon coupon(String title, int amount, int days) {
+		long now = System.currentTimeMillis();
+		Date startDate = new Date(now - TimeUnit.DAYS.toMillis(Math.max(-days, 0) + 1));
+		Date endDate = new Date(now + TimeUnit.DAYS.toMillis(days));
+		return new Coupon(title, startDate, endDate, amount, CouponType.FOOD, "coupon " + title, 9.9, null);
+	}
+
+	/**
+	 * returns a name which is unique within the test run (the in-memory database
+	 * lives as long as the JVM). keep the prefix short, the name columns are
+	 * limited to 20 characters.
+	 */
+	public static String unique(String prefix) {
+		return prefix + "_" + sequence.incrementAndGet();
+	}
+}
@@ -0,0 +1,93 @@
+package com.utilityclasses;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.testsupport.EmbeddedDatabase;
+
+/**
+ * Tests the schema migrations V1 - V5 on a database of their own: a new
+ * database and a database created before the migrations (plain passwords and
+ * no indexes) end up with the same schema, and applying the migrations again
+ * changes nothing.
+ *
+ * @author SegevSinay
+ */
+public class SchemaMigratorTest {
+
+	private static final String DB_NAME = "schema_migrator_db";
+
+	private static Connection connect() throws Exception {
+		return DriverManager.getConnection("jdbc:derby:memory:" + DB_NAME + ";create=true");
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		EmbeddedDatabase.stop(DB_NAME);
+	}
+
+	@Test
+	public void migratesNewDatabase() throws Exception {
+		try (Connection conn = connect();) {
+			assertEquals(0, SchemaMigrator.getCurrentVersion(conn));
+			assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.migrate(conn));
+			assertLatestSchema(conn);
+			assertEquals(0, SchemaMigrator.migrate(conn));
+			assertTrue(conn.getAutoCommit());
+		}
+	}
+
+	@Test
+	public void migratesDatabaseWithPlainPasswords() throws Exception {
+		try (Connection conn = connect(); Statement stmt = conn.createStatement();) {
+			// the tables as they were created before the schema migrations
+			stmt.executeUpdate(DatabaseUtility.companiesTableSql());
+			stmt.executeUpdate(DatabaseUtility.customersTableSql());
+			stmt.executeUpdate(DatabaseUtility.couponsTableSql());
+			stmt.executeUpdate(DatabaseUtility.customerCouponTableSql());
+			stmt.executeUpdate(DatabaseUtility.companyCouponTableSql());
+			stmt.executeUpdate("INSERT INTO companies (COMP_NAME, PASSWORD, EMAIL) VALUES ('acme', 'acme1234', 'a@acme.com')");
+			stmt.executeUpdate("INSERT INTO customers (CUST_NAME, PASSWORD) VALUES ('dana', 'dana1234')");
+
+			assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.migrate(conn));
+			assertLatestSchema(conn);
+			try (ResultSet rs = stmt.executeQuery("SELECT PASSWORD_HASH FROM companies WHERE COMP_NAME='acme'");) {
+				assertTrue(rs.next());
+				assertTrue(PasswordHasher.verify("acme1234", rs.getString(1)));
+			}
+			try (ResultSet rs = stmt.executeQuery("SELECT PASSWORD_HASH FROM customers WHERE CUST_NAME='dana'");) {
+				assertTrue(rs.next());
+				assertTrue(PasswordHasher.verify("dana1234", rs.getString(1)));
+				assertFalse(PasswordHasher.verify("dana12345", rs.getString(1)));
+			}
+		}
+	}
+
+	private static void assertLatestSchema(Connection conn) throws Exception {
+		assertEquals(5, SchemaMigrator.getLatestVersion());
+		assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.getCurrentVersion(conn));
+		assertTrue(SchemaIndexes.indexExists(conn, "COMPANIES_LOGIN_IDX", "companies"));
+		assertTrue(SchemaIndexes.indexExists(conn, "CUSTOMERS_LOGIN_IDX", "customers"));
+		assertTrue(SchemaIndexes.indexExists(conn, "COUPONS_TYPE_PRICE_IDX", "coupons"));
+		assertFalse(SchemaIndexes.indexExists(conn, "COUPONS_TYPE_IDX", "coupons")); // dropped by V4
+		assertFalse(columnExists(conn, "COMPANIES", "PASSWORD")); // dropped by V5
+		assertFalse(columnExists(conn, "CUSTOMERS", "PASSWORD"));
+		assertTrue(columnExists(conn, "COMPANIES", "PASSWORD_HASH"));
+		assertTrue(columnExists(conn, "CUSTOMERS", "PASSWORD_HASH"));
+	}
+
+	private static boolean columnExists(Connection conn, String table, String column) throws Exception {
+		try (ResultSet rs = conn.getMetaData().getColumns(null, null, table, column);) {
+			return rs.next();
+		}
+	}
+}